@@ -2,26 +2,37 @@ package com.openclassrooms.starterjwt.controllers;
 
 import javax.validation.Valid;
 
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.payload.request.LoginRequest;
+import com.openclassrooms.starterjwt.payload.request.RefreshTokenRequest;
 import com.openclassrooms.starterjwt.payload.request.SignupRequest;
 import com.openclassrooms.starterjwt.payload.response.JwtResponse;
 import com.openclassrooms.starterjwt.payload.response.MessageResponse;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.jwt.TokenRevocationList;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
+
+import io.jsonwebtoken.Claims;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
@@ -31,15 +42,21 @@ public class AuthController {
     private final JwtUtils jwtUtils;
     private final PasswordEncoder passwordEncoder;
     private final UserRepository userRepository;
+    private final UserDetailsServiceImpl userDetailsService;
+    private final TokenRevocationList revocationList;
 
     AuthController(AuthenticationManager authenticationManager,
             PasswordEncoder passwordEncoder,
             JwtUtils jwtUtils,
-            UserRepository userRepository) {
+            UserRepository userRepository,
+            UserDetailsServiceImpl userDetailsService,
+            TokenRevocationList revocationList) {
         this.authenticationManager = authenticationManager;
         this.jwtUtils = jwtUtils;
         this.passwordEncoder = passwordEncoder;
         this.userRepository = userRepository;
+        this.userDetailsService = userDetailsService;
+        this.revocationList = revocationList;
     }
 
     @PostMapping("/login")
@@ -49,21 +66,40 @@ public class AuthController {
                 new UsernamePasswordAuthenticationToken(loginRequest.getEmail(), loginRequest.getPassword()));
 
         SecurityContextHolder.getContext().setAuthentication(authentication);
-        String jwt = jwtUtils.generateJwtToken(authentication);
         UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
 
-        boolean isAdmin = false;
-        User user = this.userRepository.findByEmail(userDetails.getUsername()).orElse(null);
-        if (user != null) {
-            isAdmin = user.isAdmin();
+        return ResponseEntity.ok(tokensFor(userDetails));
+    }
+
+    // Refresh tokens are single use: the presented one is revoked and a new pair is issued.
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refreshToken(@Valid @RequestBody RefreshTokenRequest refreshRequest) {
+        Claims claims = jwtUtils.parseJwtToken(refreshRequest.getRefreshToken());
+        if (claims == null
+                || !jwtUtils.isRefreshToken(claims)
+                || !revocationList.revoke(claims.getId(), claims.getExpiration().getTime())) {
+            return invalidRefreshToken();
         }
 
-        return ResponseEntity.ok(new JwtResponse(jwt,
-                userDetails.getId(),
-                userDetails.getUsername(),
-                userDetails.getFirstName(),
-                userDetails.getLastName(),
-                isAdmin));
+        try {
+            UserDetailsImpl userDetails = (UserDetailsImpl) userDetailsService.loadUserByUsername(claims.getSubject());
+            return ResponseEntity.ok(tokensFor(userDetails));
+        } catch (UsernameNotFoundException e) {
+            return invalidRefreshToken();
+        }
+    }
+
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization,
+                                    @RequestBody(required = false) RefreshTokenRequest logoutRequest) {
+        if (authorization != null && authorization.startsWith("Bearer ")) {
+            revoke(authorization.substring(7));
+        }
+        if (logoutRequest != null && logoutRequest.getRefreshToken() != null) {
+            revoke(logoutRequest.getRefreshToken());
+        }
+
+        return ResponseEntity.ok(new MessageResponse("User logged out successfully!"));
     }
 
     @PostMapping("/register")
@@ -85,4 +121,35 @@ public class AuthController {
 
         return ResponseEntity.ok(new MessageResponse("User registered successfully!"));
     }
+
+    private JwtResponse tokensFor(UserDetailsImpl userDetails) {
+        return new JwtResponse(jwtUtils.generateJwtToken(userDetails),
+                jwtUtils.generateRefreshToken(userDetails),
+                userDetails.getId(),
+                userDetails.getUsername(),
+                userDetails.getFirstName(),
+                userDetails.getLastName(),
+                Boolean.TRUE.equals(userDetails.getAdmin()));
+    }
+
+    private ResponseEntity<?> invalidRefreshToken() {
+        return ResponseEntity
+                .status(HttpStatus.UNAUTHORIZED)
+                .body(new MessageResponse("Error: Invalid refresh token"));
+    }
+
+    private void revoke(String token) {
+        Claims claims = jwtUtils.parseJwtToken(token);
+        if (claims != null) {
+            revocationList.revoke(claims.getId(), claims.getExpiration().getTime());
+        }
+    }
+
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<?> handleServiceUnavailable(ServiceUnavailableException e) {
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(new MessageResponse("Error: Server is busy, please retry later"));
+    }
 }
@@ -1,30 +1,62 @@
 package com.openclassrooms.starterjwt.controllers;
 
 
+import com.openclassrooms.starterjwt.dto.ParticipationResultDto;
+import com.openclassrooms.starterjwt.dto.RecurringSessionDto;
 import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionFilterDto;
+import com.openclassrooms.starterjwt.dto.SessionPageDto;
+import com.openclassrooms.starterjwt.dto.SessionPatchDto;
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
+import com.openclassrooms.starterjwt.exception.UnknownReferenceException;
 import com.openclassrooms.starterjwt.mapper.SessionMapper;
+import com.openclassrooms.starterjwt.models.SeatHold;
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.payload.response.MessageResponse;
+import com.openclassrooms.starterjwt.payload.response.SeatHoldResponse;
+import com.openclassrooms.starterjwt.services.BookingResult;
+import com.openclassrooms.starterjwt.services.EnrollmentStatus;
+import com.openclassrooms.starterjwt.services.SessionBookingExecutor;
+import com.openclassrooms.starterjwt.services.SessionPage;
 import com.openclassrooms.starterjwt.services.SessionService;
+import com.openclassrooms.starterjwt.services.WeeklySchedule;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
 @RequestMapping("/api/session")
 @Log4j2
 public class SessionController {
+    private static final int DEFAULT_PAGE_SIZE = 20;
+
     private final SessionMapper sessionMapper;
     private final SessionService sessionService;
+    private final SessionBookingExecutor bookingExecutor;
+    private final int defaultHoldMinutes;
+    private final int maxHoldMinutes;
 
 
     public SessionController(SessionService sessionService,
-                             SessionMapper sessionMapper) {
+                             SessionMapper sessionMapper,
+                             SessionBookingExecutor bookingExecutor,
+                             @Value("${oc.app.seatHoldMinutes:10}") int defaultHoldMinutes,
+                             @Value("${oc.app.seatHoldMaxMinutes:30}") int maxHoldMinutes) {
         this.sessionMapper = sessionMapper;
         this.sessionService = sessionService;
+        this.bookingExecutor = bookingExecutor;
+        this.defaultHoldMinutes = defaultHoldMinutes;
+        this.maxHoldMinutes = maxHoldMinutes;
     }
 
     @GetMapping("/{id}")
@@ -36,17 +68,39 @@ public class SessionController {
                 return ResponseEntity.notFound().build();
             }
 
-            return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
+            return ResponseEntity.ok().body(this.sessionMapper.toDto(session, participantIdsOf(List.of(session))));
         } catch (NumberFormatException e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
     @GetMapping()
-    public ResponseEntity<?> findAll() {
-        List<Session> sessions = this.sessionService.findAll();
+    public ResponseEntity<?> findAll(@RequestParam(value = "cursor", required = false) String cursor,
+                                     @RequestParam(value = "limit", required = false) Integer limit,
+                                     SessionFilterDto filter) {
+        // Without paging parameters the full list is still returned as a plain array for existing clients
+        if (cursor == null && limit == null) {
+            List<Session> sessions = this.sessionService.findAll(filter);
 
-        return ResponseEntity.ok().body(this.sessionMapper.toDto(sessions));
+            return ResponseEntity.ok().body(this.sessionMapper.toDto(sessions, participantIdsOf(sessions)));
+        }
+
+        SessionPage page = this.sessionService.findPage(cursor, limit != null ? limit : DEFAULT_PAGE_SIZE, filter);
+        List<SessionDto> items = this.sessionMapper.toDto(page.getSessions(), participantIdsOf(page.getSessions()));
+
+        return ResponseEntity.ok().body(new SessionPageDto(items, page.getNextCursor()));
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<?> search(@RequestParam("q") String query,
+                                    @RequestParam(value = "limit", required = false) Integer limit) {
+        List<Session> sessions = this.sessionService.search(query, limit != null ? limit : DEFAULT_PAGE_SIZE);
+
+        return ResponseEntity.ok().body(this.sessionMapper.toDto(sessions, participantIdsOf(sessions)));
+    }
+
+    private Map<Long, List<Long>> participantIdsOf(List<Session> sessions) {
+        return this.sessionService.findParticipantIds(sessions.stream().map(Session::getId).collect(Collectors.toList()));
     }
 
     @PostMapping()
@@ -56,7 +110,16 @@ public class SessionController {
         Session session = this.sessionService.create(this.sessionMapper.toEntity(sessionDto));
 
         log.info(session);
-        return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
+        return ResponseEntity.ok().body(this.sessionMapper.toDto(session, participantIdsOf(List.of(session))));
+    }
+
+    @PostMapping("recurring")
+    public ResponseEntity<?> createRecurring(@Valid @RequestBody RecurringSessionDto recurringSessionDto) {
+        List<Session> sessions = this.sessionService.createRecurring(this.sessionMapper.toTemplate(recurringSessionDto),
+                new WeeklySchedule(recurringSessionDto.getStartDate(), recurringSessionDto.getEndDate(),
+                        recurringSessionDto.getDaysOfWeek(), recurringSessionDto.getTime()));
+
+        return ResponseEntity.ok().body(this.sessionMapper.toDto(sessions));
     }
 
     @PutMapping("{id}")
@@ -64,7 +127,19 @@ public class SessionController {
         try {
             Session session = this.sessionService.update(Long.parseLong(id), this.sessionMapper.toEntity(sessionDto));
 
-            return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
+            return ResponseEntity.ok().body(this.sessionMapper.toDto(session, participantIdsOf(List.of(session))));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Changed fields only; participants are left out of the response as they are never read
+    @PatchMapping("{id}")
+    public ResponseEntity<?> patch(@PathVariable("id") String id, @Valid @RequestBody SessionPatchDto sessionPatchDto) {
+        try {
+            Session session = this.sessionService.patch(Long.parseLong(id), sessionPatchDto);
+
+            return ResponseEntity.ok().body(this.sessionMapper.toDtoWithoutUsers(session));
         } catch (NumberFormatException e) {
             return ResponseEntity.badRequest().build();
         }
@@ -89,22 +164,99 @@ public class SessionController {
     @PostMapping("{id}/participate/{userId}")
     public ResponseEntity<?> participate(@PathVariable("id") String id, @PathVariable("userId") String userId) {
         try {
-            this.sessionService.participate(Long.parseLong(id), Long.parseLong(userId));
+            BookingResult result = this.bookingExecutor.isEnabled()
+                    ? this.bookingExecutor.participate(Long.parseLong(id), Long.parseLong(userId))
+                    : this.sessionService.participate(Long.parseLong(id), Long.parseLong(userId));
 
+            if (result == BookingResult.WAITLISTED) {
+                return ResponseEntity.accepted().body(new MessageResponse("Session is full: you are on the waitlist"));
+            }
             return ResponseEntity.ok().build();
         } catch (NumberFormatException e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
+    @PostMapping("{id}/participate")
+    public ResponseEntity<?> participateAll(@PathVariable("id") String id, @RequestBody List<Long> userIds) {
+        try {
+            Map<Long, EnrollmentStatus> results = this.sessionService.participateAll(Long.parseLong(id), userIds);
+
+            return ResponseEntity.ok().body(results.entrySet().stream()
+                    .map(result -> new ParticipationResultDto(result.getKey(), result.getValue()))
+                    .collect(Collectors.toList()));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @DeleteMapping("{id}/participate/{userId}")
     public ResponseEntity<?> noLongerParticipate(@PathVariable("id") String id, @PathVariable("userId") String userId) {
         try {
-            this.sessionService.noLongerParticipate(Long.parseLong(id), Long.parseLong(userId));
+            if (this.bookingExecutor.isEnabled()) {
+                this.bookingExecutor.noLongerParticipate(Long.parseLong(id), Long.parseLong(userId));
+            } else {
+                this.sessionService.noLongerParticipate(Long.parseLong(id), Long.parseLong(userId));
+            }
+
+            return ResponseEntity.ok().build();
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @PostMapping("{id}/hold/{userId}")
+    public ResponseEntity<?> holdSeat(@PathVariable("id") String id,
+                                      @PathVariable("userId") String userId,
+                                      @RequestParam(value = "minutes", required = false) Integer minutes) {
+        int holdMinutes = minutes != null ? minutes : this.defaultHoldMinutes;
+        if (holdMinutes <= 0 || holdMinutes > this.maxHoldMinutes) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        try {
+            SeatHold hold = this.sessionService.holdSeat(Long.parseLong(id), Long.parseLong(userId),
+                    TimeUnit.MINUTES.toMillis(holdMinutes));
+
+            return ResponseEntity.ok().body(new SeatHoldResponse(hold.getSessionId(), hold.getUserId(), hold.getExpiresAt()));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @PostMapping("{id}/hold/{userId}/confirm")
+    public ResponseEntity<?> confirmHold(@PathVariable("id") String id, @PathVariable("userId") String userId) {
+        try {
+            this.sessionService.confirmHold(Long.parseLong(id), Long.parseLong(userId));
 
             return ResponseEntity.ok().build();
         } catch (NumberFormatException e) {
             return ResponseEntity.badRequest().build();
         }
     }
+
+    @DeleteMapping("{id}/hold/{userId}")
+    public ResponseEntity<?> releaseHold(@PathVariable("id") String id, @PathVariable("userId") String userId) {
+        try {
+            this.sessionService.releaseHold(Long.parseLong(id), Long.parseLong(userId));
+
+            return ResponseEntity.ok().build();
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @ExceptionHandler(UnknownReferenceException.class)
+    public ResponseEntity<?> handleUnknownReference(UnknownReferenceException e) {
+        return ResponseEntity.badRequest().body(new MessageResponse("Error: " + e.getMessage()));
+    }
+
+    // Booking stripe queue full
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<?> handleServiceUnavailable(ServiceUnavailableException e) {
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(new MessageResponse("Error: Server is busy, please retry later"));
+    }
 }
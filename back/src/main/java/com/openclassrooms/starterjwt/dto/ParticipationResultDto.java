@@ -0,0 +1,15 @@
+package com.openclassrooms.starterjwt.dto;
+
+import com.openclassrooms.starterjwt.services.EnrollmentStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ParticipationResultDto {
+    private Long userId;
+
+    private EnrollmentStatus status;
+}
@@ -0,0 +1,46 @@
+package com.openclassrooms.starterjwt.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+import javax.validation.constraints.Size;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Set;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecurringSessionDto {
+    @NotBlank
+    @Size(max = 50)
+    private String name;
+
+    @NotNull
+    private Long teacher_id;
+
+    @NotNull
+    @Size(max = 2500)
+    private String description;
+
+    @Positive
+    private Integer capacity;
+
+    @NotNull
+    private LocalDate startDate;
+
+    @NotNull
+    private LocalDate endDate;
+
+    @NotEmpty
+    private Set<DayOfWeek> daysOfWeek;
+
+    @NotNull
+    private LocalTime time;
+}
@@ -0,0 +1,32 @@
+package com.openclassrooms.starterjwt.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+
+/**
+ * Optional filters of the session list, bound from the query string. The date range covers whole
+ * days in the server time zone, both bounds included.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SessionFilterDto {
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate from;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate to;
+
+    private Long teacher_id;
+
+    // Sessions this user attends
+    private Long user_id;
+
+    public boolean isEmpty() {
+        return from == null && to == null && teacher_id == null && user_id == null;
+    }
+}
@@ -0,0 +1,37 @@
+package com.openclassrooms.starterjwt.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Pattern;
+import javax.validation.constraints.Positive;
+import javax.validation.constraints.Size;
+import java.util.Date;
+
+/**
+ * Partial change of a session: null fields are left as they are. Participants are not part of it,
+ * they change through the participation endpoints.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SessionPatchDto {
+    // Same rule as @NotBlank on a full update, while still allowing the field to be left out
+    @Pattern(regexp = ".*\\S.*")
+    @Size(max = 50)
+    private String name;
+
+    private Date date;
+
+    private Long teacher_id;
+
+    @Size(max = 2500)
+    private String description;
+
+    @Positive
+    private Integer capacity;
+
+    // Checked when present, like the version of a full update
+    private Long version;
+}
@@ -0,0 +1,21 @@
+package com.openclassrooms.starterjwt.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.Collection;
+import java.util.List;
+
+@ResponseStatus(value= HttpStatus.BAD_REQUEST)
+public class UnknownReferenceException extends RuntimeException {
+    private final List<Long> ids;
+
+    public UnknownReferenceException(String type, Collection<Long> ids) {
+        super("Unknown " + type + " ids: " + ids);
+        this.ids = List.copyOf(ids);
+    }
+
+    public List<Long> getIds() {
+        return ids;
+    }
+}
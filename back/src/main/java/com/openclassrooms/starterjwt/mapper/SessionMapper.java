@@ -1,5 +1,6 @@
 package com.openclassrooms.starterjwt.mapper;
 
+import com.openclassrooms.starterjwt.dto.RecurringSessionDto;
 import com.openclassrooms.starterjwt.dto.SessionDto;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.User;
@@ -8,11 +9,14 @@ import com.openclassrooms.starterjwt.services.UserService;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.Mappings;
+import org.mapstruct.Named;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -28,15 +32,53 @@ public abstract class SessionMapper implements EntityMapper<SessionDto, Session>
     @Mappings({
             @Mapping(source = "description", target = "description"),
             @Mapping(target = "teacher", expression = "java(sessionDto.getTeacher_id() != null ? this.teacherService.findById(sessionDto.getTeacher_id()) : null)"),
-            @Mapping(target = "users", expression = "java(Optional.ofNullable(sessionDto.getUsers()).orElseGet(Collections::emptyList).stream().map(user_id -> { User user = this.userService.findById(user_id); if (user != null) { return user; } return null; }).collect(Collectors.toList()))"),
+            // One id query for all participants, which are then only referenced by their foreign key
+            @Mapping(target = "users", expression = "java(sessionDto.getUsers() == null ? null : this.userService.getReferences(sessionDto.getUsers()))"),
+            @Mapping(target = "participantCount", ignore = true),
     })
     public abstract Session toEntity(SessionDto sessionDto);
 
 
+    // Fields shared by every session of a recurring schedule; dates come from the schedule
+    @Mappings({
+            @Mapping(target = "teacher", expression = "java(recurringSessionDto.getTeacher_id() != null ? this.teacherService.findById(recurringSessionDto.getTeacher_id()) : null)"),
+            @Mapping(target = "id", ignore = true),
+            @Mapping(target = "date", ignore = true),
+            @Mapping(target = "users", ignore = true),
+            @Mapping(target = "participantCount", ignore = true),
+            @Mapping(target = "version", ignore = true),
+            @Mapping(target = "createdAt", ignore = true),
+            @Mapping(target = "updatedAt", ignore = true),
+    })
+    public abstract Session toTemplate(RecurringSessionDto recurringSessionDto);
+
+
     @Mappings({
             @Mapping(source = "description", target = "description"),
             @Mapping(source = "session.teacher.id", target = "teacher_id"),
             @Mapping(target = "users", expression = "java(Optional.ofNullable(session.getUsers()).orElseGet(Collections::emptyList).stream().map(u -> u.getId()).collect(Collectors.toList()))"),
     })
     public abstract SessionDto toDto(Session session);
+
+    @Named("withoutUsers")
+    @Mappings({
+            @Mapping(source = "description", target = "description"),
+            @Mapping(source = "session.teacher.id", target = "teacher_id"),
+            @Mapping(target = "users", ignore = true),
+    })
+    public abstract SessionDto toDtoWithoutUsers(Session session);
+
+    // Variants for endpoints returning stored sessions: participant ids come from
+    // SessionService.findParticipantIds so the lazy users collection is never initialized.
+    public SessionDto toDto(Session session, Map<Long, List<Long>> participantIds) {
+        SessionDto sessionDto = toDtoWithoutUsers(session);
+        sessionDto.setUsers(participantIds.getOrDefault(session.getId(), Collections.emptyList()));
+        return sessionDto;
+    }
+
+    public List<SessionDto> toDto(List<Session> sessions, Map<Long, List<Long>> participantIds) {
+        return sessions.stream()
+                .map(session -> toDto(session, participantIds))
+                .collect(Collectors.toList());
+    }
 }
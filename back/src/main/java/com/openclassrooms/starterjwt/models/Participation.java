@@ -0,0 +1,26 @@
+package com.openclassrooms.starterjwt.models;
+
+import lombok.*;
+
+import javax.persistence.EmbeddedId;
+import javax.persistence.Entity;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+/**
+ * Row of the PARTICIPATE join table behind Session.users. Mapping it gives the
+ * table its (session_id, user_id) primary key, which bookings rely on to stay
+ * single-statement and duplicate-free. The (user_id, session_id) index serves the reverse lookup,
+ * sessions a user attends.
+ */
+@Entity
+@Table(name = "PARTICIPATE", indexes = {
+        @Index(name = "idx_participate_user_session", columnList = "user_id, session_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Participation {
+    @EmbeddedId
+    private ParticipationId id;
+}
@@ -0,0 +1,32 @@
+package com.openclassrooms.starterjwt.models;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * A seat set aside for a user until it is confirmed, released or expires. It counts as taken in the
+ * participant count of its session for as long as it exists.
+ */
+@Entity
+@Table(name = "SEAT_HOLDS", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_seat_hold_session_user", columnNames = {"session_id", "user_id"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SeatHold {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "session_id", nullable = false)
+    private Long sessionId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "expires_at", nullable = false)
+    private Date expiresAt;
+}
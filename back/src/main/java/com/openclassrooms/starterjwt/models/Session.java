@@ -10,13 +10,17 @@ import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 import javax.persistence.*;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
 import javax.validation.constraints.Size;
 import java.time.LocalDateTime;
 import java.util.Date;
 import java.util.List;
 
 @Entity
-@Table(name = "SESSIONS")
+@Table(name = "SESSIONS", indexes = {
+        @Index(name = "idx_sessions_date_id", columnList = "date, id"),
+        @Index(name = "idx_sessions_teacher_id_date", columnList = "teacher_id, date, id")
+})
 @EntityListeners(AuditingEntityListener.class)
 @Data
 @Accessors(chain = true)
@@ -26,8 +30,11 @@ import java.util.List;
 @AllArgsConstructor
 @ToString
 public class Session {
+    // Pooled sequence (a table on MySQL): ids are handed out 50 at a time without a round trip per
+    // insert, which lets Hibernate batch the inserts where IDENTITY would force them one by one
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "session_seq")
+    @SequenceGenerator(name = "session_seq", sequenceName = "session_seq", allocationSize = 50)
     private Long id;
 
     @NotBlank
@@ -45,13 +52,24 @@ public class Session {
     @JoinColumn(name = "teacher_id", referencedColumnName = "id")
     private Teacher teacher;
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(
             name = "PARTICIPATE",
             joinColumns = @JoinColumn( name = "session_id" ),
             inverseJoinColumns = @JoinColumn( name = "user_id" ) )
     private List<User> users;
 
+    // No limit when null
+    @Positive
+    private Integer capacity;
+
+    // Seats taken: PARTICIPATE rows plus live SEAT_HOLDS, so a seat can be claimed by one conditional UPDATE
+    @Column(name = "participant_count", nullable = false)
+    private int participantCount;
+
+    @Version
+    private Long version;
+
     @CreatedDate
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
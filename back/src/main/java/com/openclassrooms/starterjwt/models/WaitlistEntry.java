@@ -0,0 +1,34 @@
+package com.openclassrooms.starterjwt.models;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * A user waiting for a seat in a full session. Entries of a session are served
+ * in id order, which is the order they joined in.
+ */
+@Entity
+@Table(name = "WAITLIST", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_waitlist_session_user", columnNames = {"session_id", "user_id"})
+}, indexes = {
+        @Index(name = "idx_waitlist_session_id", columnList = "session_id, id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WaitlistEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "session_id", nullable = false)
+    private Long sessionId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,14 @@
+package com.openclassrooms.starterjwt.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Date;
+
+@Getter
+@AllArgsConstructor
+public class SeatHoldResponse {
+  private Long sessionId;
+  private Long userId;
+  private Date expiresAt;
+}
@@ -0,0 +1,12 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.models.ParticipationId;
+
+import java.util.Collection;
+
+public interface ParticipationBatchRepository {
+    // Single JDBC batches: no entity is loaded or merged first
+    void batchInsert(Collection<ParticipationId> participations);
+
+    void batchDelete(Collection<ParticipationId> participations);
+}
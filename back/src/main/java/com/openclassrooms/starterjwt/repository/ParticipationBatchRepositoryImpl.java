@@ -0,0 +1,40 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.models.ParticipationId;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+public class ParticipationBatchRepositoryImpl implements ParticipationBatchRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    public ParticipationBatchRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void batchInsert(Collection<ParticipationId> participations) {
+        if (!participations.isEmpty()) {
+            this.jdbcTemplate.batchUpdate("insert into PARTICIPATE (session_id, user_id) values (?, ?)",
+                    toArgs(participations));
+        }
+    }
+
+    @Override
+    public void batchDelete(Collection<ParticipationId> participations) {
+        if (!participations.isEmpty()) {
+            this.jdbcTemplate.batchUpdate("delete from PARTICIPATE where session_id = ? and user_id = ?",
+                    toArgs(participations));
+        }
+    }
+
+    private static List<Object[]> toArgs(Collection<ParticipationId> participations) {
+        List<Object[]> args = new ArrayList<>(participations.size());
+        for (ParticipationId participation : participations) {
+            args.add(new Object[] {participation.getSessionId(), participation.getUserId()});
+        }
+        return args;
+    }
+}
@@ -0,0 +1,26 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.models.Participation;
+import com.openclassrooms.starterjwt.models.ParticipationId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface ParticipationRepository extends JpaRepository<Participation, ParticipationId>, ParticipationBatchRepository {
+    // Inserts nothing when the session or the user does not exist; a duplicate hits the primary key
+    @Transactional
+    @Modifying
+    @Query(value = "insert into PARTICIPATE (session_id, user_id) "
+            + "select s.id, u.id from SESSIONS s cross join USERS u where s.id = :sessionId and u.id = :userId",
+            nativeQuery = true)
+    int insertParticipation(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "delete from PARTICIPATE where session_id = :sessionId and user_id = :userId", nativeQuery = true)
+    int deleteParticipation(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+}
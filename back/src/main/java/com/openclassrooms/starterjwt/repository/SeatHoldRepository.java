@@ -0,0 +1,52 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.models.SeatHold;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface SeatHoldRepository extends JpaRepository<SeatHold, Long> {
+    // Same shape as ParticipationRepository.insertParticipation: nothing inserted for an unknown user
+    @Transactional
+    @Modifying
+    @Query(value = "insert into SEAT_HOLDS (session_id, user_id, expires_at) "
+            + "select s.id, u.id, :expiresAt from SESSIONS s cross join USERS u where s.id = :sessionId and u.id = :userId",
+            nativeQuery = true)
+    int insertHold(@Param("sessionId") Long sessionId, @Param("userId") Long userId, @Param("expiresAt") Date expiresAt);
+
+    Optional<SeatHold> findBySessionIdAndUserId(Long sessionId, Long userId);
+
+    long countBySessionId(Long sessionId);
+
+    List<SeatHold> findBySessionIdIn(Collection<Long> sessionIds);
+
+    // The delete decides between a confirmation, a release and an expiry racing for the same hold
+    @Transactional
+    @Modifying
+    @Query(value = "delete from SEAT_HOLDS where id = :id", nativeQuery = true)
+    int deleteHold(@Param("id") Long id);
+
+    @Transactional
+    @Modifying
+    @Query(value = "delete from SEAT_HOLDS where id = :id and expires_at > :now", nativeQuery = true)
+    int deleteActiveHold(@Param("id") Long id, @Param("now") Date now);
+
+    @Transactional
+    @Modifying
+    @Query(value = "delete from SEAT_HOLDS where id = :id and expires_at <= :now", nativeQuery = true)
+    int deleteExpiredHold(@Param("id") Long id, @Param("now") Date now);
+
+    @Transactional
+    @Modifying
+    @Query(value = "delete from SEAT_HOLDS where session_id = :sessionId", nativeQuery = true)
+    int deleteBySessionId(@Param("sessionId") Long sessionId);
+}
@@ -0,0 +1,15 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.dto.SessionFilterDto;
+import com.openclassrooms.starterjwt.models.Session;
+
+import java.util.Date;
+import java.util.List;
+
+public interface SessionFilterRepository {
+    /**
+     * Sessions matching the filter, ordered by (date, id) and starting after the given position when
+     * there is one. No limit when {@code maxResults} is null.
+     */
+    List<Session> findFiltered(SessionFilterDto filter, Date afterDate, Long afterId, Integer maxResults);
+}
@@ -0,0 +1,77 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.dto.SessionFilterDto;
+import com.openclassrooms.starterjwt.models.Participation;
+import com.openclassrooms.starterjwt.models.Session;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Subquery;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+public class SessionFilterRepositoryImpl implements SessionFilterRepository {
+    private final EntityManager entityManager;
+
+    public SessionFilterRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public List<Session> findFiltered(SessionFilterDto filter, Date afterDate, Long afterId, Integer maxResults) {
+        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
+        CriteriaQuery<Session> query = builder.createQuery(Session.class);
+        Root<Session> session = query.from(Session.class);
+        Path<Date> date = session.get("date");
+        Path<Long> id = session.get("id");
+        List<Predicate> conditions = new ArrayList<>();
+
+        // Plain range conditions on the column, so the (date, id) and (teacher_id, date, id) indexes apply
+        if (filter.getFrom() != null) {
+            conditions.add(builder.greaterThanOrEqualTo(date, startOf(filter.getFrom())));
+        }
+        if (filter.getTo() != null) {
+            conditions.add(builder.lessThan(date, startOf(filter.getTo().plusDays(1))));
+        }
+        if (filter.getTeacher_id() != null) {
+            // The foreign key column itself, without a join on TEACHERS
+            conditions.add(builder.equal(session.get("teacher").get("id"), filter.getTeacher_id()));
+        }
+        if (filter.getUser_id() != null) {
+            // Probes the PARTICIPATE(user_id, session_id) index rather than loading the participants
+            Subquery<Long> participation = query.subquery(Long.class);
+            Root<Participation> participate = participation.from(Participation.class);
+            participation.select(participate.get("id").get("sessionId")).where(
+                    builder.equal(participate.get("id").get("userId"), filter.getUser_id()),
+                    builder.equal(participate.get("id").get("sessionId"), id));
+            conditions.add(builder.exists(participation));
+        }
+        if (afterDate != null) {
+            conditions.add(builder.or(
+                    builder.greaterThan(date, afterDate),
+                    builder.and(builder.equal(date, afterDate), builder.greaterThan(id, afterId))));
+        }
+
+        query.select(session)
+                .where(conditions.toArray(new Predicate[0]))
+                .orderBy(builder.asc(date), builder.asc(id));
+
+        TypedQuery<Session> typedQuery = this.entityManager.createQuery(query);
+        if (maxResults != null) {
+            typedQuery.setMaxResults(maxResults);
+        }
+        return typedQuery.getResultList();
+    }
+
+    private static Date startOf(LocalDate day) {
+        return Date.from(day.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+}
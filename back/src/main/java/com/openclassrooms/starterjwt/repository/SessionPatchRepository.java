@@ -0,0 +1,8 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.dto.SessionPatchDto;
+
+public interface SessionPatchRepository {
+    // One UPDATE of the changed columns, the version and updated_at: nothing is loaded first
+    int patch(Long id, SessionPatchDto patch);
+}
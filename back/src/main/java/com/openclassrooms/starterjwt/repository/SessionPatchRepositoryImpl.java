@@ -0,0 +1,67 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.dto.SessionPatchDto;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaUpdate;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+public class SessionPatchRepositoryImpl implements SessionPatchRepository {
+    private final EntityManager entityManager;
+
+    public SessionPatchRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public int patch(Long id, SessionPatchDto patch) {
+        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
+        CriteriaUpdate<Session> update = builder.createCriteriaUpdate(Session.class);
+        Root<Session> session = update.from(Session.class);
+        List<Predicate> conditions = new ArrayList<>();
+        conditions.add(builder.equal(session.get("id"), id));
+
+        if (patch.getName() != null) {
+            update.set(session.<String>get("name"), patch.getName());
+        }
+        if (patch.getDate() != null) {
+            update.set(session.<Date>get("date"), patch.getDate());
+        }
+        if (patch.getDescription() != null) {
+            update.set(session.<String>get("description"), patch.getDescription());
+        }
+        if (patch.getTeacher_id() != null) {
+            // A reference is enough to write the foreign key
+            update.set(session.<Teacher>get("teacher"), this.entityManager.getReference(Teacher.class, patch.getTeacher_id()));
+        }
+        if (patch.getCapacity() != null) {
+            update.set(session.<Integer>get("capacity"), patch.getCapacity());
+            // Never below the seats already taken, checked under the row lock
+            conditions.add(builder.le(session.<Integer>get("participantCount"), patch.getCapacity()));
+        }
+        if (patch.getVersion() != null) {
+            conditions.add(builder.equal(session.get("version"), patch.getVersion()));
+        }
+
+        // Bulk updates skip @Version and @UpdateTimestamp, so both are written here
+        Path<Long> version = session.get("version");
+        update.set(version, builder.sum(version, 1L));
+        update.set(session.<LocalDateTime>get("updatedAt"), LocalDateTime.now());
+        update.where(conditions.toArray(new Predicate[0]));
+
+        // Same as @Modifying(flushAutomatically = true, clearAutomatically = true)
+        this.entityManager.flush();
+        int updated = this.entityManager.createQuery(update).executeUpdate();
+        this.entityManager.clear();
+        return updated;
+    }
+}
@@ -1,9 +1,73 @@
 package com.openclassrooms.starterjwt.repository;
 
 import com.openclassrooms.starterjwt.models.Session;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.LockModeType;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
-public interface SessionRepository  extends JpaRepository<Session, Long> {
+public interface SessionRepository  extends JpaRepository<Session, Long>, SessionPatchRepository, SessionFilterRepository {
+    @Query("select s from Session s order by s.date asc, s.id asc")
+    List<Session> findFirstPage(Pageable pageable);
+
+    // Keyset condition on (date, id), served by the SESSIONS(date, id) index without any offset scan
+    @Query("select s from Session s where s.date > :date or (s.date = :date and s.id > :id) order by s.date asc, s.id asc")
+    List<Session> findPageAfter(@Param("date") Date date, @Param("id") Long id, Pageable pageable);
+
+    // Text of every session for the search index, without teachers or participants
+    @Query("select s.id, s.name, s.description from Session s")
+    List<Object[]> findAllText();
+
+    // Reads the join table only: participant ids without loading any USERS row
+    @Query(value = "select session_id, user_id from PARTICIPATE where session_id in (:sessionIds) order by session_id, user_id", nativeQuery = true)
+    List<Object[]> findParticipantIds(@Param("sessionIds") Collection<Long> sessionIds);
+
+    // Row lock for writes that need the current counters, such as a group taking several seats at once
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from Session s where s.id = :id")
+    Optional<Session> findByIdForUpdate(@Param("id") Long id);
+
+    // Claims a seat without loading the session: the capacity check and the increment happen under
+    // the row lock, so concurrent bookings queue on it and can never oversell. The version bump makes
+    // a concurrent update of the session fail its check. Newcomers get no seat while others are
+    // waiting for one, so freed seats go to the waitlist first.
+    @Modifying
+    @Query("update Session s set s.participantCount = s.participantCount + 1, s.version = s.version + 1 "
+            + "where s.id = :id and (s.capacity is null or s.participantCount < s.capacity) "
+            + "and not exists (select w.id from WaitlistEntry w where w.sessionId = :id)")
+    int claimSeat(@Param("id") Long id);
+
+    // Seat for the head of the waitlist: succeeds only when there is both a free seat and a waiter
+    @Modifying
+    @Query("update Session s set s.participantCount = s.participantCount + 1, s.version = s.version + 1 "
+            + "where s.id = :id and (s.capacity is null or s.participantCount < s.capacity) "
+            + "and exists (select w.id from WaitlistEntry w where w.sessionId = :id)")
+    int claimSeatForWaitlist(@Param("id") Long id);
+
+    // Releases a seat only when the user holds one
+    @Modifying
+    @Query("update Session s set s.participantCount = s.participantCount - 1, s.version = s.version + 1 "
+            + "where s.id = :id and exists (select p.id.userId from Participation p "
+            + "where p.id.sessionId = :id and p.id.userId = :userId)")
+    int releaseSeat(@Param("id") Long id, @Param("userId") Long userId);
+
+    // Gives back the seat of a hold, once its row is deleted in the same transaction
+    @Modifying
+    @Query("update Session s set s.participantCount = s.participantCount - 1, s.version = s.version + 1 where s.id = :id")
+    int releaseHeldSeat(@Param("id") Long id);
+
+    // A confirmed hold keeps its seat but still changes the participants
+    @Modifying
+    @Query("update Session s set s.version = s.version + 1 where s.id = :id")
+    int incrementVersion(@Param("id") Long id);
 }
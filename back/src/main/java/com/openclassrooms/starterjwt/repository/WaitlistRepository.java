@@ -0,0 +1,51 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.models.WaitlistEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface WaitlistRepository extends JpaRepository<WaitlistEntry, Long> {
+    // Same shape as ParticipationRepository.insertParticipation: nothing inserted for an unknown user
+    @Transactional
+    @Modifying
+    @Query(value = "insert into WAITLIST (session_id, user_id, created_at) "
+            + "select s.id, u.id, current_timestamp from SESSIONS s cross join USERS u where s.id = :sessionId and u.id = :userId",
+            nativeQuery = true)
+    int insertEntry(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "delete from WAITLIST where session_id = :sessionId and user_id = :userId", nativeQuery = true)
+    int deleteEntry(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    // Waiters who were given a seat another way, such as a full update of the participants
+    @Transactional
+    @Modifying
+    @Query(value = "delete from WAITLIST where session_id = :sessionId and user_id in (:userIds)", nativeQuery = true)
+    int deleteEntries(@Param("sessionId") Long sessionId, @Param("userIds") Collection<Long> userIds);
+
+    @Transactional
+    @Modifying
+    @Query(value = "delete from WAITLIST where session_id = :sessionId", nativeQuery = true)
+    int deleteBySessionId(@Param("sessionId") Long sessionId);
+
+    Optional<WaitlistEntry> findFirstBySessionIdOrderByIdAsc(Long sessionId);
+
+    @Query("select w.userId from WaitlistEntry w where w.sessionId = :sessionId order by w.id")
+    List<Long> findWaitingUserIds(@Param("sessionId") Long sessionId);
+
+    @Query("select distinct w.sessionId from WaitlistEntry w")
+    List<Long> findSessionIdsWithWaiters();
+
+    @Query("select distinct w.sessionId from WaitlistEntry w where w.sessionId in :sessionIds")
+    List<Long> findSessionIdsWithWaiters(@Param("sessionIds") Collection<Long> sessionIds);
+}
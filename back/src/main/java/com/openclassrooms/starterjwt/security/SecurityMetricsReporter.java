@@ -0,0 +1,85 @@
+package com.openclassrooms.starterjwt.security;
+
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.openclassrooms.starterjwt.security.jwt.VerifiedTokenCache;
+import com.openclassrooms.starterjwt.security.password.PasswordHashingExecutor;
+import com.openclassrooms.starterjwt.security.services.UserDetailsCache;
+
+/**
+ * Logs the counters of the authentication caches and of the password hashing
+ * pool at INFO on a fixed interval, since the application exposes no metrics
+ * endpoint. A zero interval turns the report off.
+ */
+@Component
+public class SecurityMetricsReporter {
+  private static final Logger logger = LoggerFactory.getLogger(SecurityMetricsReporter.class);
+
+  private final VerifiedTokenCache verifiedTokenCache;
+
+  private final UserDetailsCache userDetailsCache;
+
+  private final PasswordHashingExecutor passwordHashingExecutor;
+
+  private final long intervalMs;
+
+  private ScheduledExecutorService scheduler;
+
+  public SecurityMetricsReporter(VerifiedTokenCache verifiedTokenCache, UserDetailsCache userDetailsCache,
+      PasswordHashingExecutor passwordHashingExecutor,
+      @Value("${oc.app.securityMetricsLogIntervalMs:60000}") long intervalMs) {
+    this.verifiedTokenCache = verifiedTokenCache;
+    this.userDetailsCache = userDetailsCache;
+    this.passwordHashingExecutor = passwordHashingExecutor;
+    this.intervalMs = intervalMs;
+  }
+
+  @PostConstruct
+  public void start() {
+    if (intervalMs <= 0) {
+      return;
+    }
+
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "security-metrics");
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.scheduleAtFixedRate(this::report, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+
+  public void report() {
+    logger.info("Security metrics: {}", summary());
+  }
+
+  public String summary() {
+    return String.format(Locale.ROOT, "jwt cache size=%d hits=%d misses=%d hitRatio=%.3f"
+        + ", user cache size=%d hits=%d misses=%d hitRatio=%.3f"
+        + ", password hashing queue=%d active=%d hashes=%d avgMs=%.1f maxMs=%.1f rejected=%d",
+        verifiedTokenCache.size(), verifiedTokenCache.getHitCount(), verifiedTokenCache.getMissCount(),
+        verifiedTokenCache.getHitRatio(),
+        userDetailsCache.size(), userDetailsCache.getHitCount(), userDetailsCache.getMissCount(),
+        userDetailsCache.getHitRatio(),
+        passwordHashingExecutor.getQueueDepth(), passwordHashingExecutor.getActiveCount(),
+        passwordHashingExecutor.getHashCount(), passwordHashingExecutor.getAverageHashMillis(),
+        passwordHashingExecutor.getMaxHashMillis(), passwordHashingExecutor.getRejectedCount());
+  }
+}
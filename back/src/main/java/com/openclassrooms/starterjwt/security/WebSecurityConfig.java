@@ -1,6 +1,7 @@
 package com.openclassrooms.starterjwt.security;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -10,12 +11,16 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 import com.openclassrooms.starterjwt.security.jwt.AuthEntryPointJwt;
 import com.openclassrooms.starterjwt.security.jwt.AuthTokenFilter;
+import com.openclassrooms.starterjwt.security.password.AdaptiveBCryptPasswordEncoder;
+import com.openclassrooms.starterjwt.security.password.BoundedPasswordEncoder;
+import com.openclassrooms.starterjwt.security.password.PasswordHashingExecutor;
+import com.openclassrooms.starterjwt.security.ratelimit.AuthRateLimitFilter;
+import com.openclassrooms.starterjwt.security.ratelimit.AuthRateLimiter;
 import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
 
 @Configuration
@@ -31,6 +36,24 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
   @Autowired
   private AuthEntryPointJwt unauthorizedHandler;
 
+  @Autowired
+  private PasswordHashingExecutor passwordHashingExecutor;
+
+  @Autowired
+  private AuthRateLimiter authRateLimiter;
+
+  @Value("${oc.app.bcryptStrength:0}")
+  private int bcryptStrength;
+
+  @Value("${oc.app.bcryptTargetMs:100}")
+  private long bcryptTargetMs;
+
+  @Value("${oc.app.bcryptMinStrength:10}")
+  private int bcryptMinStrength;
+
+  @Value("${oc.app.bcryptMaxStrength:16}")
+  private int bcryptMaxStrength;
+
   @Bean
   public AuthTokenFilter authenticationJwtTokenFilter() {
     return new AuthTokenFilter();
@@ -49,7 +72,10 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
 
   @Bean
   public PasswordEncoder passwordEncoder() {
-    return new BCryptPasswordEncoder();
+    AdaptiveBCryptPasswordEncoder bcrypt = bcryptStrength > 0
+        ? new AdaptiveBCryptPasswordEncoder(bcryptStrength)
+        : AdaptiveBCryptPasswordEncoder.calibrated(bcryptTargetMs, bcryptMinStrength, bcryptMaxStrength);
+    return new BoundedPasswordEncoder(bcrypt, passwordHashingExecutor);
   }
 
   @Override
@@ -61,6 +87,8 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
       .antMatchers("/api/**").authenticated()
       .anyRequest().authenticated();
 
+    // Not a bean, so the servlet container does not register it a second time.
+    http.addFilterBefore(new AuthRateLimitFilter(authRateLimiter), UsernamePasswordAuthenticationFilter.class);
     http.addFilterBefore(authenticationJwtTokenFilter(), UsernamePasswordAuthenticationFilter.class);
   }
 }
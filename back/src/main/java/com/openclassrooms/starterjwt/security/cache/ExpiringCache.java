@@ -0,0 +1,124 @@
+package com.openclassrooms.starterjwt.security.cache;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Bounded in-memory cache where every entry carries its own expiry instant.
+ * When the size limit is reached, expired entries are purged first, then
+ * arbitrary entries are dropped until a tenth of the capacity is free again.
+ */
+public class ExpiringCache<K, V> {
+  private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+
+  private final int maxSize;
+
+  private final LongAdder hits = new LongAdder();
+
+  private final LongAdder misses = new LongAdder();
+
+  private final LongAdder evictions = new LongAdder();
+
+  public ExpiringCache(int maxSize) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+    }
+    this.maxSize = maxSize;
+  }
+
+  public V get(K key) {
+    Entry<V> entry = entries.get(key);
+    if (entry == null) {
+      misses.increment();
+      return null;
+    }
+
+    if (entry.isExpired(System.currentTimeMillis())) {
+      entries.remove(key, entry);
+      misses.increment();
+      return null;
+    }
+
+    hits.increment();
+    return entry.value;
+  }
+
+  public void put(K key, V value, long expiresAtMillis) {
+    long now = System.currentTimeMillis();
+    if (expiresAtMillis <= now) {
+      return;
+    }
+
+    if (entries.size() >= maxSize) {
+      evict(now);
+    }
+    entries.put(key, new Entry<>(value, expiresAtMillis));
+  }
+
+  public void remove(K key) {
+    entries.remove(key);
+  }
+
+  public void removeIf(Predicate<V> predicate) {
+    entries.values().removeIf(entry -> predicate.test(entry.value));
+  }
+
+  public void clear() {
+    entries.clear();
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  public double getHitRatio() {
+    long hitCount = hits.sum();
+    long total = hitCount + misses.sum();
+    return total == 0 ? 0.0 : (double) hitCount / total;
+  }
+
+  private synchronized void evict(long now) {
+    if (entries.size() < maxSize) {
+      return;
+    }
+
+    entries.values().removeIf(entry -> entry.isExpired(now));
+
+    int target = maxSize - Math.max(1, maxSize / 10);
+    Iterator<Entry<V>> iterator = entries.values().iterator();
+    while (entries.size() > target && iterator.hasNext()) {
+      iterator.next();
+      iterator.remove();
+      evictions.increment();
+    }
+  }
+
+  private static final class Entry<V> {
+    private final V value;
+
+    private final long expiresAtMillis;
+
+    private Entry(V value, long expiresAtMillis) {
+      this.value = value;
+      this.expiresAtMillis = expiresAtMillis;
+    }
+
+    private boolean isExpired(long now) {
+      return now >= expiresAtMillis;
+    }
+  }
+}
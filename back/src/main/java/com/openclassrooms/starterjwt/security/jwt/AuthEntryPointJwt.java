@@ -1,43 +1,97 @@
 package com.openclassrooms.starterjwt.security.jwt;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.http.MediaType;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.web.AuthenticationEntryPoint;
 import org.springframework.stereotype.Component;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
 
 @Component
 public class AuthEntryPointJwt implements AuthenticationEntryPoint {
 
-  private static final Logger logger = LoggerFactory.getLogger(AuthEntryPointJwt.class);
+  // The body only varies by message and path, so the fixed JSON parts are encoded once.
+  private static final byte[] BODY_PREFIX = ascii("{\"status\":" + HttpServletResponse.SC_UNAUTHORIZED
+      + ",\"error\":\"Unauthorized\",\"message\":");
+
+  private static final byte[] PATH_FIELD = ascii(",\"path\":");
+
+  private static final byte[] BODY_SUFFIX = ascii("}");
+
+  private static final byte[] NULL_VALUE = ascii("null");
+
+  private static final int MAX_CACHED_MESSAGES = 64;
+
+  private final Map<String, byte[]> encodedMessages = new ConcurrentHashMap<>();
+
+  private final AuthFailureMonitor authFailureMonitor;
+
+  public AuthEntryPointJwt(AuthFailureMonitor authFailureMonitor) {
+    this.authFailureMonitor = authFailureMonitor;
+  }
 
   @Override
   public void commence(HttpServletRequest request, HttpServletResponse response, AuthenticationException authException)
       throws IOException, ServletException {
-    logger.error("Unauthorized error: {}", authException.getMessage());
+    String message = authException.getMessage();
+    authFailureMonitor.record(AuthFailureMonitor.Reason.UNAUTHORIZED, message);
+
+    byte[] encodedMessage = encodeMessage(message);
+    byte[] encodedPath = encode(request.getServletPath());
 
     response.setContentType(MediaType.APPLICATION_JSON_VALUE);
     response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+    response.setContentLength(BODY_PREFIX.length + encodedMessage.length + PATH_FIELD.length
+        + encodedPath.length + BODY_SUFFIX.length);
+
+    ServletOutputStream out = response.getOutputStream();
+    out.write(BODY_PREFIX);
+    out.write(encodedMessage);
+    out.write(PATH_FIELD);
+    out.write(encodedPath);
+    out.write(BODY_SUFFIX);
+  }
 
-    final Map<String, Object> body = new HashMap<>();
-    body.put("status", HttpServletResponse.SC_UNAUTHORIZED);
-    body.put("error", "Unauthorized");
-    body.put("message", authException.getMessage());
-    body.put("path", request.getServletPath());
+  // Messages come from a handful of Spring Security exceptions; paths are too varied to cache.
+  private byte[] encodeMessage(String message) {
+    if (message == null) {
+      return NULL_VALUE;
+    }
 
-    final ObjectMapper mapper = new ObjectMapper();
-    mapper.writeValue(response.getOutputStream(), body);
+    byte[] encoded = encodedMessages.get(message);
+    if (encoded == null) {
+      encoded = encode(message);
+      if (encodedMessages.size() < MAX_CACHED_MESSAGES) {
+        encodedMessages.putIfAbsent(message, encoded);
+      }
+    }
+    return encoded;
   }
 
+  private static byte[] encode(String value) {
+    if (value == null) {
+      return NULL_VALUE;
+    }
+
+    byte[] escaped = JsonStringEncoder.getInstance().quoteAsUTF8(value);
+    byte[] quoted = new byte[escaped.length + 2];
+    quoted[0] = '"';
+    System.arraycopy(escaped, 0, quoted, 1, escaped.length);
+    quoted[quoted.length - 1] = '"';
+    return quoted;
+  }
+
+  private static byte[] ascii(String value) {
+    return value.getBytes(StandardCharsets.US_ASCII);
+  }
 }
@@ -0,0 +1,76 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts authentication failures by reason and logs at most one sample per
+ * reason and interval, with the number of failures seen since the last sample.
+ */
+@Component
+public class AuthFailureMonitor {
+  private static final Logger logger = LoggerFactory.getLogger(AuthFailureMonitor.class);
+
+  public enum Reason {
+    INVALID_SIGNATURE("Invalid JWT signature"),
+    MALFORMED_TOKEN("Invalid JWT token"),
+    EXPIRED_TOKEN("JWT token is expired"),
+    UNSUPPORTED_TOKEN("JWT token is unsupported"),
+    EMPTY_CLAIMS("JWT claims string is empty"),
+    UNAUTHORIZED("Unauthorized error");
+
+    private final String label;
+
+    Reason(String label) {
+      this.label = label;
+    }
+  }
+
+  private static final Reason[] REASONS = Reason.values();
+
+  private final LongAdder[] counts = new LongAdder[REASONS.length];
+
+  private final AtomicLongArray loggedCounts = new AtomicLongArray(REASONS.length);
+
+  private final AtomicLongArray nextLogAt = new AtomicLongArray(REASONS.length);
+
+  private final long logIntervalMs;
+
+  public AuthFailureMonitor(@Value("${oc.app.authFailureLogIntervalMs:10000}") long logIntervalMs) {
+    this.logIntervalMs = logIntervalMs;
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = new LongAdder();
+    }
+  }
+
+  public void record(Reason reason, String detail) {
+    int index = reason.ordinal();
+    counts[index].increment();
+
+    long now = System.currentTimeMillis();
+    long next = nextLogAt.get(index);
+    // Only the thread that wins the CAS for this interval logs; the others just count.
+    if (now >= next && nextLogAt.compareAndSet(index, next, now + logIntervalMs)) {
+      long total = counts[index].sum();
+      long since = total - loggedCounts.getAndSet(index, total);
+      logger.warn("{}: {} ({} since last report, {} total)", reason.label, detail, since, total);
+    }
+  }
+
+  public long getCount(Reason reason) {
+    return counts[reason.ordinal()].sum();
+  }
+
+  public long getTotalCount() {
+    long total = 0;
+    for (LongAdder count : counts) {
+      total += count.sum();
+    }
+    return total;
+  }
+}
@@ -10,6 +10,7 @@ import javax.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -19,6 +20,8 @@ import org.springframework.web.filter.OncePerRequestFilter;
 
 import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
 
+import io.jsonwebtoken.Claims;
+
 public class AuthTokenFilter extends OncePerRequestFilter {
   @Autowired
   private JwtUtils jwtUtils;
@@ -26,6 +29,15 @@ public class AuthTokenFilter extends OncePerRequestFilter {
   @Autowired
   private UserDetailsServiceImpl userDetailsService;
 
+  @Autowired
+  private VerifiedTokenCache tokenCache;
+
+  @Autowired
+  private TokenRevocationList revocationList;
+
+  @Value("${oc.app.jwtStatelessPrincipal:false}")
+  private boolean statelessPrincipal;
+
   private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
 
   @Override
@@ -33,10 +45,9 @@ public class AuthTokenFilter extends OncePerRequestFilter {
       throws ServletException, IOException {
     try {
       String jwt = parseJwt(request);
-      if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-        String username = jwtUtils.getUserNameFromJwtToken(jwt);
-
-        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+      Claims claims = jwt != null ? verifyJwt(jwt) : null;
+      if (claims != null && isUsableAccessToken(claims)) {
+        UserDetails userDetails = loadUserDetails(claims);
         UsernamePasswordAuthenticationToken authentication =
             new UsernamePasswordAuthenticationToken(
                 userDetails,
@@ -53,6 +64,32 @@ public class AuthTokenFilter extends OncePerRequestFilter {
     filterChain.doFilter(request, response);
   }
 
+  private boolean isUsableAccessToken(Claims claims) {
+    return !jwtUtils.isRefreshToken(claims) && !revocationList.isRevoked(claims.getId());
+  }
+
+  private UserDetails loadUserDetails(Claims claims) {
+    if (statelessPrincipal) {
+      UserDetails userDetails = jwtUtils.getUserDetailsFromClaims(claims);
+      if (userDetails != null) {
+        return userDetails;
+      }
+    }
+
+    return userDetailsService.loadUserByUsername(claims.getSubject());
+  }
+
+  private Claims verifyJwt(String jwt) {
+    Claims claims = tokenCache.get(jwt);
+    if (claims == null) {
+      claims = jwtUtils.parseJwtToken(jwt);
+      if (claims != null) {
+        tokenCache.put(jwt, claims);
+      }
+    }
+    return claims;
+  }
+
   private String parseJwt(HttpServletRequest request) {
     String headerAuth = request.getHeader("Authorization");
 
@@ -0,0 +1,164 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Versioned ES256 key pairs. The newest key signs. Retired public keys stay
+ * available for verification and in the JWKS until the tokens they signed
+ * have expired.
+ */
+public class JwtKeyRing {
+  private static final String KEY_ALGORITHM = "EC";
+
+  private static final String CURVE = "secp256r1";
+
+  private static final int COORDINATE_LENGTH = 32;
+
+  private final long retentionMs;
+
+  private final ConcurrentHashMap<String, VerificationKey> verificationKeys = new ConcurrentHashMap<>();
+
+  private volatile SigningKey signingKey;
+
+  public JwtKeyRing(long retentionMs) {
+    this.retentionMs = retentionMs;
+  }
+
+  public synchronized void install(String keyId, KeyPair keyPair) {
+    long now = System.currentTimeMillis();
+    SigningKey previous = signingKey;
+
+    verificationKeys.put(keyId, new VerificationKey((ECPublicKey) keyPair.getPublic(), Long.MAX_VALUE));
+    signingKey = new SigningKey(keyId, keyPair.getPrivate());
+
+    if (previous != null && !previous.getKeyId().equals(keyId)) {
+      verificationKeys.computeIfPresent(previous.getKeyId(),
+          (kid, key) -> new VerificationKey(key.publicKey, now + retentionMs));
+    }
+    verificationKeys.values().removeIf(key -> key.isExpired(now));
+  }
+
+  public String rotate() {
+    String keyId = UUID.randomUUID().toString();
+    install(keyId, generateKeyPair());
+    return keyId;
+  }
+
+  public SigningKey getSigningKey() {
+    return signingKey;
+  }
+
+  public PublicKey getVerificationKey(String keyId) {
+    VerificationKey key = keyId != null ? verificationKeys.get(keyId) : null;
+    if (key == null || key.isExpired(System.currentTimeMillis())) {
+      return null;
+    }
+    return key.publicKey;
+  }
+
+  public List<Map<String, String>> toJwks() {
+    long now = System.currentTimeMillis();
+    List<Map<String, String>> keys = new ArrayList<>();
+    verificationKeys.forEach((keyId, key) -> {
+      if (!key.isExpired(now)) {
+        keys.add(toJwk(keyId, key.publicKey));
+      }
+    });
+    return keys;
+  }
+
+  public static KeyPair generateKeyPair() {
+    try {
+      KeyPairGenerator generator = KeyPairGenerator.getInstance(KEY_ALGORITHM);
+      generator.initialize(new ECGenParameterSpec(CURVE));
+      return generator.generateKeyPair();
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("Cannot generate ES256 key pair", e);
+    }
+  }
+
+  public static KeyPair decodeKeyPair(String base64PrivateKey, String base64PublicKey) {
+    try {
+      KeyFactory keyFactory = KeyFactory.getInstance(KEY_ALGORITHM);
+      PrivateKey privateKey = keyFactory.generatePrivate(
+          new PKCS8EncodedKeySpec(Base64.getMimeDecoder().decode(base64PrivateKey)));
+      PublicKey publicKey = keyFactory.generatePublic(
+          new X509EncodedKeySpec(Base64.getMimeDecoder().decode(base64PublicKey)));
+      return new KeyPair(publicKey, privateKey);
+    } catch (GeneralSecurityException | IllegalArgumentException e) {
+      throw new IllegalStateException("Invalid ES256 key pair configuration", e);
+    }
+  }
+
+  private static Map<String, String> toJwk(String keyId, ECPublicKey publicKey) {
+    Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+    Map<String, String> jwk = new LinkedHashMap<>();
+    jwk.put("kty", "EC");
+    jwk.put("crv", "P-256");
+    jwk.put("kid", keyId);
+    jwk.put("use", "sig");
+    jwk.put("alg", "ES256");
+    jwk.put("x", encoder.encodeToString(toUnsigned(publicKey.getW().getAffineX())));
+    jwk.put("y", encoder.encodeToString(toUnsigned(publicKey.getW().getAffineY())));
+    return jwk;
+  }
+
+  private static byte[] toUnsigned(BigInteger value) {
+    byte[] bytes = value.toByteArray();
+    byte[] coordinate = new byte[COORDINATE_LENGTH];
+    int length = Math.min(bytes.length, COORDINATE_LENGTH);
+    System.arraycopy(bytes, bytes.length - length, coordinate, COORDINATE_LENGTH - length, length);
+    return coordinate;
+  }
+
+  public static final class SigningKey {
+    private final String keyId;
+
+    private final PrivateKey privateKey;
+
+    private SigningKey(String keyId, PrivateKey privateKey) {
+      this.keyId = keyId;
+      this.privateKey = privateKey;
+    }
+
+    public String getKeyId() {
+      return keyId;
+    }
+
+    public PrivateKey getPrivateKey() {
+      return privateKey;
+    }
+  }
+
+  private static final class VerificationKey {
+    private final ECPublicKey publicKey;
+
+    private final long expiresAtMillis;
+
+    private VerificationKey(ECPublicKey publicKey, long expiresAtMillis) {
+      this.publicKey = publicKey;
+      this.expiresAtMillis = expiresAtMillis;
+    }
+
+    private boolean isExpired(long now) {
+      return now >= expiresAtMillis;
+    }
+  }
+}
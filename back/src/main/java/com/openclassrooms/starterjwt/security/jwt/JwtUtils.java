@@ -1,59 +1,254 @@
 package com.openclassrooms.starterjwt.security.jwt;
 
+import java.security.Key;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.crypto.spec.SecretKeySpec;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
 
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 
 import io.jsonwebtoken.*;
+import io.jsonwebtoken.impl.TextCodec;
 
 @Component
 public class JwtUtils {
   private static final Logger logger = LoggerFactory.getLogger(JwtUtils.class);
 
+  private static final String CLAIM_ID = "id";
+
+  private static final String CLAIM_FIRST_NAME = "firstName";
+
+  private static final String CLAIM_LAST_NAME = "lastName";
+
+  private static final String CLAIM_ADMIN = "admin";
+
+  private static final String CLAIM_TOKEN_TYPE = "type";
+
+  private static final String REFRESH_TOKEN_TYPE = "refresh";
+
+  @Autowired
+  private AuthFailureMonitor authFailureMonitor;
+
   @Value("${oc.app.jwtSecret}")
   private String jwtSecret;
 
   @Value("${oc.app.jwtExpirationMs}")
   private int jwtExpirationMs;
 
+  @Value("${oc.app.jwtRefreshExpirationMs:86400000}")
+  private long jwtRefreshExpirationMs;
+
+  @Value("${oc.app.jwtAlgorithm:HS512}")
+  private String jwtAlgorithm;
+
+  @Value("${oc.app.jwtKeyId:}")
+  private String jwtKeyId;
+
+  @Value("${oc.app.jwtPrivateKey:}")
+  private String jwtPrivateKey;
+
+  @Value("${oc.app.jwtPublicKey:}")
+  private String jwtPublicKey;
+
+  // Rotation generates the new key pair locally, which other nodes cannot verify: single-node use only
+  @Value("${oc.app.jwtKeyRotationMs:0}")
+  private long jwtKeyRotationMs;
+
+  private Key signingKey;
+
+  private JwtKeyRing keyRing;
+
+  private boolean sharedKeyConfigured;
+
+  private JwtParser jwtParser;
+
+  private ScheduledExecutorService keyRotationScheduler;
+
+  // Same key derivation as signWith(HS512, String): the secret is read as base64.
+  // The configured parser holds no per-parse state and is shared across threads.
+  @PostConstruct
+  public void init() {
+    if (SignatureAlgorithm.ES256.getValue().equals(jwtAlgorithm)) {
+      initKeyRing();
+      return;
+    }
+
+    signingKey = new SecretKeySpec(TextCodec.BASE64.decode(jwtSecret), SignatureAlgorithm.HS512.getJcaName());
+    jwtParser = Jwts.parser().setSigningKey(signingKey);
+  }
+
+  private void initKeyRing() {
+    keyRing = new JwtKeyRing(Math.max(jwtExpirationMs, jwtRefreshExpirationMs));
+    sharedKeyConfigured = StringUtils.hasText(jwtPrivateKey) && StringUtils.hasText(jwtPublicKey);
+    if (sharedKeyConfigured) {
+      keyRing.install(StringUtils.hasText(jwtKeyId) ? jwtKeyId : "default",
+          JwtKeyRing.decodeKeyPair(jwtPrivateKey, jwtPublicKey));
+    } else {
+      keyRing.rotate();
+    }
+
+    jwtParser = Jwts.parser().setSigningKeyResolver(new SigningKeyResolverAdapter() {
+      // jjwt 0.9.1 declares the raw type: an override taking JwsHeader<?> would not compile
+      @SuppressWarnings("rawtypes")
+      @Override
+      public Key resolveSigningKey(JwsHeader header, Claims claims) {
+        return resolveVerificationKey(header);
+      }
+    });
+
+    if (jwtKeyRotationMs > 0 && sharedKeyConfigured) {
+      logger.warn("oc.app.jwtKeyRotationMs ignored: the configured key pair is shared by all nodes,"
+          + " rotate it by deploying a new oc.app.jwtKeyId and key pair");
+    } else if (jwtKeyRotationMs > 0) {
+      keyRotationScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "jwt-key-rotation");
+        thread.setDaemon(true);
+        return thread;
+      });
+      keyRotationScheduler.scheduleAtFixedRate(this::rotateSigningKey,
+          jwtKeyRotationMs, jwtKeyRotationMs, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    if (keyRotationScheduler != null) {
+      keyRotationScheduler.shutdownNow();
+    }
+  }
+
+  private Key resolveVerificationKey(JwsHeader<?> header) {
+    if (!SignatureAlgorithm.ES256.getValue().equals(header.getAlgorithm())) {
+      throw new UnsupportedJwtException("Unexpected JWT algorithm: " + header.getAlgorithm());
+    }
+
+    Key key = keyRing.getVerificationKey(header.getKeyId());
+    if (key == null) {
+      throw new SignatureException("Unknown JWT key id: " + header.getKeyId());
+    }
+    return key;
+  }
+
+  public String rotateSigningKey() {
+    if (keyRing == null) {
+      throw new IllegalStateException("Key rotation requires oc.app.jwtAlgorithm=ES256");
+    }
+    if (sharedKeyConfigured) {
+      throw new IllegalStateException("The configured key pair can only be rotated by configuration");
+    }
+
+    String keyId = keyRing.rotate();
+    logger.info("JWT signing key rotated, new key id: {}", keyId);
+    return keyId;
+  }
+
+  public List<Map<String, String>> getPublicJwks() {
+    return keyRing != null ? keyRing.toJwks() : Collections.emptyList();
+  }
+
   public String generateJwtToken(Authentication authentication) {
+    return generateJwtToken((UserDetailsImpl) authentication.getPrincipal());
+  }
 
-    UserDetailsImpl userPrincipal = (UserDetailsImpl) authentication.getPrincipal();
+  public String generateJwtToken(UserDetailsImpl userPrincipal) {
+    JwtBuilder builder = newToken(userPrincipal.getUsername(), jwtExpirationMs)
+        .claim(CLAIM_ID, userPrincipal.getId())
+        .claim(CLAIM_FIRST_NAME, userPrincipal.getFirstName())
+        .claim(CLAIM_LAST_NAME, userPrincipal.getLastName())
+        .claim(CLAIM_ADMIN, userPrincipal.getAdmin());
+
+    return sign(builder);
+  }
 
+  // Refresh tokens only carry the subject: the user is reloaded when they are exchanged.
+  public String generateRefreshToken(UserDetailsImpl userPrincipal) {
+    JwtBuilder builder = newToken(userPrincipal.getUsername(), jwtRefreshExpirationMs)
+        .claim(CLAIM_TOKEN_TYPE, REFRESH_TOKEN_TYPE);
+
+    return sign(builder);
+  }
+
+  public boolean isRefreshToken(Claims claims) {
+    return REFRESH_TOKEN_TYPE.equals(claims.get(CLAIM_TOKEN_TYPE));
+  }
+
+  private JwtBuilder newToken(String subject, long expirationMs) {
+    Date now = new Date();
     return Jwts.builder()
-        .setSubject((userPrincipal.getUsername()))
-        .setIssuedAt(new Date())
-        .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
-        .signWith(SignatureAlgorithm.HS512, jwtSecret)
-        .compact();
+        .setId(UUID.randomUUID().toString())
+        .setSubject(subject)
+        .setIssuedAt(now)
+        .setExpiration(new Date(now.getTime() + expirationMs));
+  }
+
+  private String sign(JwtBuilder builder) {
+    if (keyRing != null) {
+      JwtKeyRing.SigningKey key = keyRing.getSigningKey();
+      builder.setHeaderParam(JwsHeader.KEY_ID, key.getKeyId())
+          .signWith(SignatureAlgorithm.ES256, key.getPrivateKey());
+    } else {
+      builder.signWith(SignatureAlgorithm.HS512, signingKey);
+    }
+
+    return builder.compact();
   }
 
   public String getUserNameFromJwtToken(String token) {
-    return Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(token).getBody().getSubject();
+    return jwtParser.parseClaimsJws(token).getBody().getSubject();
+  }
+
+  public UserDetailsImpl getUserDetailsFromClaims(Claims claims) {
+    Number id = claims.get(CLAIM_ID, Number.class);
+    if (id == null) {
+      return null;
+    }
+
+    return UserDetailsImpl
+            .builder()
+            .id(id.longValue())
+            .username(claims.getSubject())
+            .firstName(claims.get(CLAIM_FIRST_NAME, String.class))
+            .lastName(claims.get(CLAIM_LAST_NAME, String.class))
+            .admin(Boolean.TRUE.equals(claims.get(CLAIM_ADMIN, Boolean.class)))
+            .build();
   }
 
   public boolean validateJwtToken(String authToken) {
+    return parseJwtToken(authToken) != null;
+  }
+
+  public Claims parseJwtToken(String authToken) {
     try {
-      Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(authToken);
-      return true;
+      return jwtParser.parseClaimsJws(authToken).getBody();
     } catch (SignatureException e) {
-      logger.error("Invalid JWT signature: {}", e.getMessage());
+      authFailureMonitor.record(AuthFailureMonitor.Reason.INVALID_SIGNATURE, e.getMessage());
     } catch (MalformedJwtException e) {
-      logger.error("Invalid JWT token: {}", e.getMessage());
+      authFailureMonitor.record(AuthFailureMonitor.Reason.MALFORMED_TOKEN, e.getMessage());
     } catch (ExpiredJwtException e) {
-      logger.error("JWT token is expired: {}", e.getMessage());
+      authFailureMonitor.record(AuthFailureMonitor.Reason.EXPIRED_TOKEN, e.getMessage());
     } catch (UnsupportedJwtException e) {
-      logger.error("JWT token is unsupported: {}", e.getMessage());
+      authFailureMonitor.record(AuthFailureMonitor.Reason.UNSUPPORTED_TOKEN, e.getMessage());
     } catch (IllegalArgumentException e) {
-      logger.error("JWT claims string is empty: {}", e.getMessage());
+      authFailureMonitor.record(AuthFailureMonitor.Reason.EMPTY_CLAIMS, e.getMessage());
     }
 
-    return false;
+    return null;
   }
 }
@@ -0,0 +1,139 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Revoked token ids, kept until the token would have expired anyway.
+ * A Bloom filter answers the common "not revoked" case without allocating or
+ * locking; only its false positives fall through to the exact set. Expired ids
+ * are purged, and the filter rebuilt, on a fixed interval in the background.
+ */
+@Component
+public class TokenRevocationList {
+  private static final int HASH_FUNCTIONS = 7;
+
+  private static final long PURGE_INTERVAL_MS = 60000;
+
+  private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+
+  private final int bitCount;
+
+  private volatile AtomicLongArray bits;
+
+  private ScheduledExecutorService purgeScheduler;
+
+  // About 10 bits per expected id keeps the false positive rate near 1% with 7 hashes.
+  public TokenRevocationList(@Value("${oc.app.jwtRevocationExpectedTokens:100000}") int expectedTokens) {
+    this.bitCount = Math.max(64, expectedTokens * 10);
+    this.bits = new AtomicLongArray((bitCount + 63) / 64);
+  }
+
+  @PostConstruct
+  public void start() {
+    purgeScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "jwt-revocation-purge");
+      thread.setDaemon(true);
+      return thread;
+    });
+    purgeScheduler.scheduleAtFixedRate(this::purgeExpired, PURGE_INTERVAL_MS, PURGE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    if (purgeScheduler != null) {
+      purgeScheduler.shutdownNow();
+    }
+  }
+
+  public boolean isRevoked(String tokenId) {
+    if (tokenId == null || !mightContain(bits, tokenId)) {
+      return false;
+    }
+
+    Long expiresAt = revoked.get(tokenId);
+    return expiresAt != null && expiresAt > System.currentTimeMillis();
+  }
+
+  // Returns false when the id was already revoked, so single-use tokens can be claimed atomically.
+  public synchronized boolean revoke(String tokenId, long expiresAtMillis) {
+    long now = System.currentTimeMillis();
+    if (tokenId == null || expiresAtMillis <= now) {
+      return false;
+    }
+
+    if (revoked.putIfAbsent(tokenId, expiresAtMillis) != null) {
+      return false;
+    }
+    add(bits, tokenId);
+    return true;
+  }
+
+  public int size() {
+    return revoked.size();
+  }
+
+  // Bloom filters cannot forget, so expired ids are dropped by rebuilding the bit set.
+  public synchronized void purgeExpired() {
+    long now = System.currentTimeMillis();
+    if (!revoked.values().removeIf(expiresAt -> expiresAt <= now)) {
+      return;
+    }
+
+    AtomicLongArray rebuilt = new AtomicLongArray(bits.length());
+    for (String tokenId : revoked.keySet()) {
+      add(rebuilt, tokenId);
+    }
+    bits = rebuilt;
+  }
+
+  private void add(AtomicLongArray target, String tokenId) {
+    int h1 = tokenId.hashCode();
+    int h2 = spread(h1);
+    for (int i = 0; i < HASH_FUNCTIONS; i++) {
+      int bit = index(h1 + i * h2);
+      long mask = 1L << bit;
+      int word = bit >>> 6;
+      long current;
+      do {
+        current = target.get(word);
+      } while ((current & mask) == 0 && !target.compareAndSet(word, current, current | mask));
+    }
+  }
+
+  private boolean mightContain(AtomicLongArray target, String tokenId) {
+    int h1 = tokenId.hashCode();
+    int h2 = spread(h1);
+    for (int i = 0; i < HASH_FUNCTIONS; i++) {
+      int bit = index(h1 + i * h2);
+      if ((target.get(bit >>> 6) & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int index(int hash) {
+    return (hash & Integer.MAX_VALUE) % bitCount;
+  }
+
+  // Second hash for double hashing, derived with the murmur3 finalizer.
+  private static int spread(int h) {
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h | 1;
+  }
+}
@@ -0,0 +1,50 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.util.Date;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.openclassrooms.starterjwt.security.cache.ExpiringCache;
+
+import io.jsonwebtoken.Claims;
+
+@Component
+public class VerifiedTokenCache {
+  private final ExpiringCache<String, Claims> cache;
+
+  public VerifiedTokenCache(@Value("${oc.app.jwtCacheMaxSize:10000}") int maxSize) {
+    this.cache = new ExpiringCache<>(maxSize);
+  }
+
+  public Claims get(String token) {
+    return cache.get(token);
+  }
+
+  public void put(String token, Claims claims) {
+    Date expiration = claims.getExpiration();
+    if (expiration != null) {
+      cache.put(token, claims, expiration.getTime());
+    }
+  }
+
+  public void evict(String token) {
+    cache.remove(token);
+  }
+
+  public int size() {
+    return cache.size();
+  }
+
+  public long getHitCount() {
+    return cache.getHitCount();
+  }
+
+  public long getMissCount() {
+    return cache.getMissCount();
+  }
+
+  public double getHitRatio() {
+    return cache.getHitRatio();
+  }
+}
@@ -0,0 +1,85 @@
+package com.openclassrooms.starterjwt.security.password;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * BCrypt encoder whose cost is calibrated against a target hash time on the
+ * current host. A stored hash with a lower cost reports upgradeEncoding, so
+ * DaoAuthenticationProvider re-hashes it on the next successful login. Stronger
+ * hashes are kept: nodes calibrated to different costs would otherwise keep
+ * re-hashing the same passwords back and forth.
+ */
+public class AdaptiveBCryptPasswordEncoder extends BCryptPasswordEncoder {
+  private static final Logger logger = LoggerFactory.getLogger(AdaptiveBCryptPasswordEncoder.class);
+
+  private static final Pattern BCRYPT_PATTERN = Pattern.compile("\\A\\$2(a|y|b)?\\$(\\d\\d)\\$[./0-9A-Za-z]{53}");
+
+  private static final int PROBE_STRENGTH = 8;
+
+  private static final int PROBE_RUNS = 3;
+
+  private final int strength;
+
+  public AdaptiveBCryptPasswordEncoder(int strength) {
+    super(strength);
+    this.strength = strength;
+  }
+
+  public static AdaptiveBCryptPasswordEncoder calibrated(long targetMillis, int minStrength, int maxStrength) {
+    int strength = calibrate(targetMillis, minStrength, maxStrength);
+    logger.info("BCrypt strength calibrated to {} for a target of {} ms", strength, targetMillis);
+    return new AdaptiveBCryptPasswordEncoder(strength);
+  }
+
+  // Each extra round doubles the cost, so the probe runs at cost 8 at most, a few
+  // ms per hash, and the target cost is extrapolated from the best of PROBE_RUNS.
+  // It is not raised to minStrength, which would make startup pay for
+  // PROBE_RUNS full-cost hashes.
+  public static int calibrate(long targetMillis, int minStrength, int maxStrength) {
+    int strength = Math.min(PROBE_STRENGTH, maxStrength);
+    double estimatedMillis = probe(strength);
+
+    while (strength < maxStrength && estimatedMillis * 2 <= targetMillis) {
+      estimatedMillis *= 2;
+      strength++;
+    }
+    while (strength > minStrength && estimatedMillis > targetMillis) {
+      estimatedMillis /= 2;
+      strength--;
+    }
+    return Math.max(strength, minStrength);
+  }
+
+  private static double probe(int strength) {
+    long best = Long.MAX_VALUE;
+    for (int i = 0; i < PROBE_RUNS; i++) {
+      long start = System.nanoTime();
+      BCrypt.hashpw("calibration", BCrypt.gensalt(strength));
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    return best / 1_000_000.0;
+  }
+
+  public int getStrength() {
+    return strength;
+  }
+
+  @Override
+  public boolean upgradeEncoding(String encodedPassword) {
+    if (encodedPassword == null) {
+      return false;
+    }
+
+    Matcher matcher = BCRYPT_PATTERN.matcher(encodedPassword);
+    if (!matcher.matches()) {
+      return false;
+    }
+    return Integer.parseInt(matcher.group(2)) < strength;
+  }
+}
@@ -0,0 +1,34 @@
+package com.openclassrooms.starterjwt.security.password;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Sends encode and matches calls to the PasswordHashingExecutor. The user
+ * lookup done by DaoAuthenticationProvider stays on the request thread and in
+ * its transaction. Only the CPU-bound hashing is moved to the bounded pool.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder {
+  private final PasswordEncoder delegate;
+
+  private final PasswordHashingExecutor executor;
+
+  public BoundedPasswordEncoder(PasswordEncoder delegate, PasswordHashingExecutor executor) {
+    this.delegate = delegate;
+    this.executor = executor;
+  }
+
+  @Override
+  public String encode(CharSequence rawPassword) {
+    return executor.execute(() -> delegate.encode(rawPassword));
+  }
+
+  @Override
+  public boolean matches(CharSequence rawPassword, String encodedPassword) {
+    return executor.execute(() -> delegate.matches(rawPassword, encodedPassword));
+  }
+
+  @Override
+  public boolean upgradeEncoding(String encodedPassword) {
+    return delegate.upgradeEncoding(encodedPassword);
+  }
+}
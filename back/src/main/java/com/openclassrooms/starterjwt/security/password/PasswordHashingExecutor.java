@@ -0,0 +1,133 @@
+package com.openclassrooms.starterjwt.security.password;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
+
+/**
+ * Runs BCrypt work on a fixed pool with a bounded queue, so a login burst
+ * cannot take over every request thread. When the queue is full the caller
+ * gets a ServiceUnavailableException straight away instead of waiting.
+ */
+@Component
+public class PasswordHashingExecutor {
+  private final ThreadPoolExecutor executor;
+
+  private final long timeoutMs;
+
+  private final int retryAfterSeconds;
+
+  private final LongAdder hashCount = new LongAdder();
+
+  private final LongAdder hashNanos = new LongAdder();
+
+  private final AtomicLong maxHashNanos = new AtomicLong();
+
+  private final LongAdder rejectedCount = new LongAdder();
+
+  public PasswordHashingExecutor(@Value("${oc.app.passwordHashThreads:0}") int threads,
+      @Value("${oc.app.passwordHashQueueCapacity:100}") int queueCapacity,
+      @Value("${oc.app.passwordHashTimeoutMs:5000}") long timeoutMs,
+      @Value("${oc.app.passwordHashRetryAfterSeconds:1}") int retryAfterSeconds) {
+    int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    AtomicInteger threadNumber = new AtomicInteger();
+    this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueCapacity),
+        runnable -> {
+          Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        },
+        new ThreadPoolExecutor.AbortPolicy());
+    this.timeoutMs = timeoutMs;
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  public <T> T execute(Callable<T> task) {
+    Future<T> future;
+    try {
+      future = executor.submit(() -> timed(task));
+    } catch (RejectedExecutionException e) {
+      rejectedCount.increment();
+      throw new ServiceUnavailableException(retryAfterSeconds);
+    }
+
+    try {
+      return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    } catch (TimeoutException e) {
+      future.cancel(true);
+      rejectedCount.increment();
+      throw new ServiceUnavailableException(retryAfterSeconds);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      future.cancel(true);
+      throw new ServiceUnavailableException(retryAfterSeconds);
+    }
+  }
+
+  private <T> T timed(Callable<T> task) throws Exception {
+    long start = System.nanoTime();
+    try {
+      return task.call();
+    } finally {
+      long elapsed = System.nanoTime() - start;
+      hashCount.increment();
+      hashNanos.add(elapsed);
+      maxHashNanos.accumulateAndGet(elapsed, Math::max);
+    }
+  }
+
+  public int getQueueDepth() {
+    return executor.getQueue().size();
+  }
+
+  public int getActiveCount() {
+    return executor.getActiveCount();
+  }
+
+  public long getRejectedCount() {
+    return rejectedCount.sum();
+  }
+
+  public long getHashCount() {
+    return hashCount.sum();
+  }
+
+  public double getAverageHashMillis() {
+    long count = hashCount.sum();
+    return count == 0 ? 0.0 : hashNanos.sum() / (count * 1_000_000.0);
+  }
+
+  public double getMaxHashMillis() {
+    return maxHashNanos.get() / 1_000_000.0;
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+}
@@ -0,0 +1,196 @@
+package com.openclassrooms.starterjwt.security.ratelimit;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Rejects login and register attempts over the per-IP or per-email budget
+ * with a 429 before any password hashing happens. The IP bucket is checked
+ * first so that floods are refused without reading the request body, and
+ * bodies are read up to a few kilobytes only: anything larger is refused
+ * with a 413 since no credentials payload comes close.
+ */
+public class AuthRateLimitFilter extends OncePerRequestFilter {
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  static final int MAX_BODY_BYTES = 8 * 1024;
+
+  private static final byte[] TOO_MANY_REQUESTS_BODY =
+      "{\"message\":\"Error: Too many requests, please retry later\"}".getBytes(StandardCharsets.US_ASCII);
+
+  private static final byte[] PAYLOAD_TOO_LARGE_BODY =
+      "{\"message\":\"Error: Request body too large\"}".getBytes(StandardCharsets.US_ASCII);
+
+  private final AuthRateLimiter rateLimiter;
+
+  public AuthRateLimitFilter(AuthRateLimiter rateLimiter) {
+    this.rateLimiter = rateLimiter;
+  }
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    if (!rateLimiter.isEnabled() || !"POST".equals(request.getMethod())) {
+      return true;
+    }
+
+    String path = request.getServletPath();
+    return !"/api/auth/login".equals(path) && !"/api/auth/register".equals(path);
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+      throws ServletException, IOException {
+    long wait = rateLimiter.acquireForIp(request.getRemoteAddr());
+    if (wait > 0) {
+      reject(response, wait);
+      return;
+    }
+
+    byte[] body = request.getContentLengthLong() > MAX_BODY_BYTES ? null : readBody(request.getInputStream());
+    if (body == null) {
+      write(response, HttpStatus.PAYLOAD_TOO_LARGE, PAYLOAD_TOO_LARGE_BODY);
+      return;
+    }
+
+    CachedBodyRequest cachedRequest = new CachedBodyRequest(request, body);
+    String email = readEmail(cachedRequest.body);
+    if (email != null) {
+      wait = rateLimiter.acquireForEmail(email);
+      if (wait > 0) {
+        reject(response, wait);
+        return;
+      }
+    }
+
+    filterChain.doFilter(cachedRequest, response);
+  }
+
+  private void reject(HttpServletResponse response, long waitMillis) throws IOException {
+    response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf((waitMillis + 999) / 1000));
+    write(response, HttpStatus.TOO_MANY_REQUESTS, TOO_MANY_REQUESTS_BODY);
+  }
+
+  private void write(HttpServletResponse response, HttpStatus status, byte[] body) throws IOException {
+    response.setStatus(status.value());
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    response.setContentLength(body.length);
+    response.getOutputStream().write(body);
+  }
+
+  // Null once the body runs past the limit, whatever the declared Content-Length.
+  private static byte[] readBody(InputStream input) throws IOException {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    byte[] buffer = new byte[1024];
+    int read;
+    while ((read = input.read(buffer)) != -1) {
+      if (body.size() + read > MAX_BODY_BYTES) {
+        return null;
+      }
+      body.write(buffer, 0, read);
+    }
+    return body.toByteArray();
+  }
+
+  // Streams over the top-level fields only; malformed bodies are left to the controller.
+  private static String readEmail(byte[] body) {
+    if (body.length == 0) {
+      return null;
+    }
+
+    try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        return null;
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        JsonToken value = parser.nextToken();
+        if ("email".equals(field)) {
+          return value == JsonToken.VALUE_STRING ? parser.getText() : null;
+        }
+        parser.skipChildren();
+      }
+    } catch (IOException e) {
+      return null;
+    }
+    return null;
+  }
+
+  private static class CachedBodyRequest extends HttpServletRequestWrapper {
+    private final byte[] body;
+
+    CachedBodyRequest(HttpServletRequest request, byte[] body) {
+      super(request);
+      this.body = body;
+    }
+
+    @Override
+    public ServletInputStream getInputStream() {
+      ByteArrayInputStream input = new ByteArrayInputStream(body);
+      return new ServletInputStream() {
+        @Override
+        public int read() {
+          return input.read();
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+          return input.read(buffer, offset, length);
+        }
+
+        @Override
+        public boolean isFinished() {
+          return input.available() == 0;
+        }
+
+        @Override
+        public boolean isReady() {
+          return true;
+        }
+
+        // The body is already in memory, so it is readable at once and never blocks.
+        @Override
+        public void setReadListener(ReadListener listener) {
+          try {
+            if (!isFinished()) {
+              listener.onDataAvailable();
+            }
+            if (isFinished()) {
+              listener.onAllDataRead();
+            }
+          } catch (IOException e) {
+            listener.onError(e);
+          }
+        }
+      };
+    }
+
+    @Override
+    public BufferedReader getReader() throws IOException {
+      String encoding = getCharacterEncoding();
+      return new BufferedReader(new InputStreamReader(getInputStream(),
+          encoding != null ? encoding : StandardCharsets.UTF_8.name()));
+    }
+  }
+}
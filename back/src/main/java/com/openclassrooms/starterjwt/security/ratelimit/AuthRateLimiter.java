@@ -0,0 +1,42 @@
+package com.openclassrooms.starterjwt.security.ratelimit;
+
+import java.util.Locale;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class AuthRateLimiter {
+  private final boolean enabled;
+
+  private final TokenBucketRateLimiter ipLimiter;
+
+  private final TokenBucketRateLimiter emailLimiter;
+
+  public AuthRateLimiter(@Value("${oc.app.authRateLimitEnabled:true}") boolean enabled,
+                         @Value("${oc.app.authRateLimitIpBurst:20}") int ipBurst,
+                         @Value("${oc.app.authRateLimitIpRefillMs:1000}") long ipRefillMs,
+                         @Value("${oc.app.authRateLimitEmailBurst:5}") int emailBurst,
+                         @Value("${oc.app.authRateLimitEmailRefillMs:12000}") long emailRefillMs,
+                         @Value("${oc.app.authRateLimitMaxKeys:100000}") int maxKeys) {
+    this.enabled = enabled;
+    this.ipLimiter = new TokenBucketRateLimiter(ipBurst, ipRefillMs, maxKeys);
+    this.emailLimiter = new TokenBucketRateLimiter(emailBurst, emailRefillMs, maxKeys);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public long acquireForIp(String ip) {
+    return ipLimiter.tryAcquire(ip);
+  }
+
+  public long acquireForEmail(String email) {
+    return emailLimiter.tryAcquire(email.trim().toLowerCase(Locale.ROOT));
+  }
+
+  public long getRejectedCount() {
+    return ipLimiter.getRejectedCount() + emailLimiter.getRejectedCount();
+  }
+}
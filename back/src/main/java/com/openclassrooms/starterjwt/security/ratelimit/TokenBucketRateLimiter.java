@@ -0,0 +1,99 @@
+package com.openclassrooms.starterjwt.security.ratelimit;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free per-key token buckets, implemented as GCRA: each key only stores
+ * the theoretical arrival time of its next request in an AtomicLong.
+ * A bucket whose arrival time is in the past is full again, so it is dropped
+ * by the periodic sweep and recreated on demand. Once maxKeys buckets are
+ * tracked, new keys share a single overflow bucket until the sweep makes room,
+ * so a flood of distinct keys is throttled as a whole instead of let through.
+ */
+public class TokenBucketRateLimiter {
+  private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+  private final long emissionIntervalMs;
+
+  private final long burstToleranceMs;
+
+  private final int maxKeys;
+
+  private final long sweepIntervalMs;
+
+  private final AtomicLong nextSweepAt;
+
+  private final AtomicLong overflowBucket = new AtomicLong();
+
+  private final LongAdder rejected = new LongAdder();
+
+  private final LongAdder overflowed = new LongAdder();
+
+  public TokenBucketRateLimiter(int burst, long refillIntervalMs, int maxKeys) {
+    if (burst <= 0 || refillIntervalMs <= 0 || maxKeys <= 0) {
+      throw new IllegalArgumentException("burst, refillIntervalMs and maxKeys must be positive");
+    }
+    this.emissionIntervalMs = refillIntervalMs;
+    this.burstToleranceMs = refillIntervalMs * (burst - 1);
+    this.maxKeys = maxKeys;
+    this.sweepIntervalMs = burstToleranceMs + refillIntervalMs;
+    this.nextSweepAt = new AtomicLong(System.currentTimeMillis() + sweepIntervalMs);
+  }
+
+  /**
+   * Takes one token for the key.
+   *
+   * @return 0 when the request is allowed, otherwise the milliseconds to wait
+   */
+  public long tryAcquire(String key) {
+    long now = System.currentTimeMillis();
+    sweepIfDue(now);
+
+    AtomicLong bucket = buckets.get(key);
+    if (bucket == null) {
+      // Under a key flood live buckets are kept, and the new keys share one bucket
+      if (buckets.size() >= maxKeys) {
+        overflowed.increment();
+        return take(overflowBucket, now);
+      }
+      bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+    }
+    return take(bucket, now);
+  }
+
+  private long take(AtomicLong bucket, long now) {
+    while (true) {
+      long tat = bucket.get();
+      long start = Math.max(tat, now);
+      long wait = start - now - burstToleranceMs;
+      if (wait > 0) {
+        rejected.increment();
+        return wait;
+      }
+      if (bucket.compareAndSet(tat, start + emissionIntervalMs)) {
+        return 0;
+      }
+    }
+  }
+
+  public int size() {
+    return buckets.size();
+  }
+
+  public long getRejectedCount() {
+    return rejected.sum();
+  }
+
+  public long getOverflowedCount() {
+    return overflowed.sum();
+  }
+
+  private void sweepIfDue(long now) {
+    long due = nextSweepAt.get();
+    if (now >= due && nextSweepAt.compareAndSet(due, now + sweepIntervalMs)) {
+      buckets.values().removeIf(bucket -> bucket.get() <= now);
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.openclassrooms.starterjwt.security.cache.ExpiringCache;
+
+/**
+ * Users loaded for authentication, kept for a short TTL. Every eviction bumps a
+ * generation, and a load only caches its result when no eviction happened since
+ * it started: a load that read the row before a change committed cannot put the
+ * old account back after the eviction.
+ */
+@Component
+public class UserDetailsCache {
+  private final ExpiringCache<String, UserDetailsImpl> cache;
+
+  private final long ttlMs;
+
+  private final AtomicLong generation = new AtomicLong();
+
+  public UserDetailsCache(@Value("${oc.app.userCacheMaxSize:10000}") int maxSize,
+      @Value("${oc.app.userCacheTtlMs:60000}") long ttlMs) {
+    this.cache = new ExpiringCache<>(maxSize);
+    this.ttlMs = ttlMs;
+  }
+
+  public UserDetailsImpl get(String username) {
+    return cache.get(username);
+  }
+
+  // Read before loading the user from the database, then passed to put
+  public long stamp() {
+    return generation.get();
+  }
+
+  public void put(UserDetailsImpl userDetails) {
+    put(userDetails, stamp());
+  }
+
+  public void put(UserDetailsImpl userDetails, long stamp) {
+    if (generation.get() != stamp) {
+      return;
+    }
+    cache.put(userDetails.getUsername(), userDetails, System.currentTimeMillis() + ttlMs);
+    // An eviction between the check and the put may have missed this entry
+    if (generation.get() != stamp) {
+      cache.remove(userDetails.getUsername());
+    }
+  }
+
+  public void evict(String username) {
+    generation.incrementAndGet();
+    cache.remove(username);
+  }
+
+  // Inside a transaction, runs once it has completed, when other loads can no longer read the old row
+  public void evictById(Long id) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      removeById(id);
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCompletion(int status) {
+        removeById(id);
+      }
+    });
+  }
+
+  private void removeById(Long id) {
+    generation.incrementAndGet();
+    cache.removeIf(userDetails -> Objects.equals(userDetails.getId(), id));
+  }
+
+  public int size() {
+    return cache.size();
+  }
+
+  public long getHitCount() {
+    return cache.getHitCount();
+  }
+
+  public long getMissCount() {
+    return cache.getMissCount();
+  }
+
+  public double getHitRatio() {
+    return cache.getHitRatio();
+  }
+}
@@ -0,0 +1,25 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+import org.springframework.stereotype.Component;
+
+import com.openclassrooms.starterjwt.models.User;
+
+@Component
+public class UserDetailsCacheEvictionListener {
+  private final UserDetailsCache userDetailsCache;
+
+  public UserDetailsCacheEvictionListener(UserDetailsCache userDetailsCache) {
+    this.userDetailsCache = userDetailsCache;
+  }
+
+  // Evicting by id also covers a changed email, whose old key is still cached.
+  // These callbacks run at flush time, so the eviction itself waits for the commit.
+  @PostUpdate
+  @PostRemove
+  public void evict(User user) {
+    userDetailsCache.evictById(user.getId());
+  }
+}
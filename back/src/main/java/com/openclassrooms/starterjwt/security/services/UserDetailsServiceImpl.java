@@ -1,36 +1,67 @@
 package com.openclassrooms.starterjwt.security.services;
 
+import java.time.LocalDateTime;
+
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 
 @Service
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
   UserRepository userRepository;
 
-  UserDetailsServiceImpl(UserRepository userRepository) {
+  UserDetailsCache userDetailsCache;
+
+  UserDetailsServiceImpl(UserRepository userRepository, UserDetailsCache userDetailsCache) {
     this.userRepository = userRepository;
+    this.userDetailsCache = userDetailsCache;
   }
 
   @Override
-  @Transactional
   public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+    UserDetailsImpl cached = userDetailsCache.get(username);
+    if (cached != null) {
+      return cached;
+    }
+
+    long stamp = userDetailsCache.stamp();
     User user = userRepository.findByEmail(username)
         .orElseThrow(() -> new UsernameNotFoundException("User Not Found with email: " + username));
 
-    return UserDetailsImpl
+    UserDetailsImpl userDetails = UserDetailsImpl
             .builder()
             .id(user.getId())
             .username(user.getEmail())
             .lastName(user.getLastName())
             .firstName(user.getFirstName())
+            .admin(user.isAdmin())
             .password(user.getPassword())
             .build();
+
+    userDetailsCache.put(userDetails, stamp);
+    return userDetails;
   }
 
+  // Called by DaoAuthenticationProvider when the stored hash cost differs from the current one.
+  @Override
+  public UserDetails updatePassword(UserDetails user, String newPassword) {
+    userRepository.updatePassword(user.getUsername(), newPassword, LocalDateTime.now());
+    userDetailsCache.evict(user.getUsername());
+
+    UserDetailsImpl current = (UserDetailsImpl) user;
+    return UserDetailsImpl
+            .builder()
+            .id(current.getId())
+            .username(current.getUsername())
+            .lastName(current.getLastName())
+            .firstName(current.getFirstName())
+            .admin(current.getAdmin())
+            .password(newPassword)
+            .build();
+  }
 }
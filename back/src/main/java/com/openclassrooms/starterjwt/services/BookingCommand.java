@@ -0,0 +1,40 @@
+package com.openclassrooms.starterjwt.services;
+
+import lombok.Getter;
+
+import java.util.concurrent.CompletableFuture;
+
+@Getter
+public class BookingCommand {
+    public enum Type {
+        PARTICIPATE,
+        LEAVE
+    }
+
+    private final Type type;
+
+    private final Long sessionId;
+
+    private final Long userId;
+
+    private final CompletableFuture<BookingResult> result = new CompletableFuture<>();
+
+    // Set by SessionService.applyBookings, only meaningful once its transaction has committed
+    private RuntimeException failure;
+
+    private boolean deferred;
+
+    public BookingCommand(Type type, Long sessionId, Long userId) {
+        this.type = type;
+        this.sessionId = sessionId;
+        this.userId = userId;
+    }
+
+    public void fail(RuntimeException failure) {
+        this.failure = failure;
+    }
+
+    public void defer() {
+        this.deferred = true;
+    }
+}
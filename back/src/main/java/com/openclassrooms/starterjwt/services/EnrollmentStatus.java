@@ -0,0 +1,9 @@
+package com.openclassrooms.starterjwt.services;
+
+// Outcome of one user in a group enrollment
+public enum EnrollmentStatus {
+    BOOKED,
+    ALREADY_PARTICIPATING,
+    USER_NOT_FOUND,
+    NO_SEAT
+}
@@ -0,0 +1,251 @@
+package com.openclassrooms.starterjwt.services;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel: timeouts are hashed by deadline into a ring of buckets that one thread visits
+ * once per tick, so scheduling and cancelling cost O(1) and no thread, task or query per timeout.
+ * Deadlines more than one turn ahead wait in their bucket with a count of turns left. Expiry is
+ * accurate to one tick, never early. Buckets are only touched by the wheel thread: other threads hand
+ * new and cancelled timeouts over through lock-free queues. Expired values are passed to the consumer
+ * on the wheel thread, which should only hand them on.
+ */
+@Log4j2
+public class HashedTimingWheel<T> {
+    private static final int PENDING = 0;
+
+    private static final int CANCELLED = 1;
+
+    private static final int EXPIRED = 2;
+
+    private final long tickMs;
+
+    private final Bucket<T>[] buckets;
+
+    private final int mask;
+
+    private final Consumer<T> onExpiry;
+
+    private final Thread worker;
+
+    private final Queue<Timeout<T>> added = new ConcurrentLinkedQueue<>();
+
+    private final Queue<Timeout<T>> cancelled = new ConcurrentLinkedQueue<>();
+
+    private final AtomicLong pendingCount = new AtomicLong();
+
+    private final LongAdder expiredCount = new LongAdder();
+
+    private long startMillis;
+
+    private long tick;
+
+    public HashedTimingWheel(long tickMs, int wheelSize, Consumer<T> onExpiry, String threadName) {
+        if (tickMs <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("tickMs and wheelSize must be positive: " + tickMs + ", " + wheelSize);
+        }
+        this.tickMs = tickMs;
+        // Power of two, so the bucket of a tick is a mask instead of a modulo
+        int size = Integer.highestOneBit(wheelSize - 1) << 1;
+        // No generic array creation in Java; the buckets only ever hold this wheel's Timeout<T>
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Bucket<T>[] ring = new Bucket[Math.max(size, 1)];
+        this.buckets = ring;
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new Bucket<>();
+        }
+        this.mask = buckets.length - 1;
+        this.onExpiry = onExpiry;
+        this.worker = new Thread(this::run, threadName);
+        this.worker.setDaemon(true);
+    }
+
+    public void start() {
+        startMillis = System.currentTimeMillis();
+        worker.start();
+    }
+
+    public void stop() {
+        worker.interrupt();
+    }
+
+    /**
+     * Schedules the value to expire at the given epoch millis. A deadline already past expires on the
+     * next tick.
+     */
+    public Timeout<T> schedule(T value, long deadlineMillis) {
+        Timeout<T> timeout = new Timeout<>(this, value, deadlineMillis);
+        pendingCount.incrementAndGet();
+        added.add(timeout);
+        return timeout;
+    }
+
+    public long getPendingCount() {
+        return pendingCount.get();
+    }
+
+    public long getExpiredCount() {
+        return expiredCount.sum();
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            long tickEnd = startMillis + (tick + 1) * tickMs;
+            long sleepMs = tickEnd - System.currentTimeMillis();
+            if (sleepMs > 0) {
+                try {
+                    Thread.sleep(sleepMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+
+            removeCancelled();
+            transferAdded();
+            expire(buckets[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout<T> timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void transferAdded() {
+        Timeout<T> timeout;
+        while ((timeout = added.poll()) != null) {
+            if (timeout.state.get() != PENDING) {
+                continue;
+            }
+            // Last tick whose end is at or after the deadline, and never a tick already passed
+            long dueTick = Math.max(ceilDiv(timeout.deadlineMillis - startMillis, tickMs) - 1, tick);
+            timeout.remainingRounds = (dueTick - tick) / buckets.length;
+            buckets[(int) (dueTick & mask)].add(timeout);
+        }
+    }
+
+    private void expire(Bucket<T> bucket) {
+        Timeout<T> timeout = bucket.head;
+        while (timeout != null) {
+            Timeout<T> next = timeout.next;
+            if (timeout.remainingRounds <= 0) {
+                bucket.remove(timeout);
+                if (timeout.state.compareAndSet(PENDING, EXPIRED)) {
+                    pendingCount.decrementAndGet();
+                    expiredCount.increment();
+                    try {
+                        onExpiry.accept(timeout.value);
+                    } catch (RuntimeException e) {
+                        log.warn("Timeout expiry failed for {}: {}", timeout.value, e.getMessage());
+                    }
+                }
+            } else {
+                timeout.remainingRounds--;
+            }
+            timeout = next;
+        }
+    }
+
+    private static long ceilDiv(long dividend, long divisor) {
+        return -Math.floorDiv(-dividend, divisor);
+    }
+
+    public static final class Timeout<T> {
+        private final HashedTimingWheel<T> wheel;
+
+        private final T value;
+
+        private final long deadlineMillis;
+
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+
+        // Owned by the wheel thread
+        private long remainingRounds;
+
+        private Bucket<T> bucket;
+
+        private Timeout<T> previous;
+
+        private Timeout<T> next;
+
+        private Timeout(HashedTimingWheel<T> wheel, T value, long deadlineMillis) {
+            this.wheel = wheel;
+            this.value = value;
+            this.deadlineMillis = deadlineMillis;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public long getDeadlineMillis() {
+            return deadlineMillis;
+        }
+
+        /**
+         * @return true when the timeout had not expired yet and never will
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(PENDING, CANCELLED)) {
+                return false;
+            }
+            wheel.pendingCount.decrementAndGet();
+            wheel.cancelled.add(this);
+            return true;
+        }
+
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+    }
+
+    // Doubly linked so a cancelled timeout leaves its bucket in O(1)
+    private static final class Bucket<T> {
+        private Timeout<T> head;
+
+        private Timeout<T> tail;
+
+        void add(Timeout<T> timeout) {
+            timeout.bucket = this;
+            timeout.previous = tail;
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+        }
+
+        void remove(Timeout<T> timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            if (timeout.previous == null) {
+                head = timeout.next;
+            } else {
+                timeout.previous.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                tail = timeout.previous;
+            } else {
+                timeout.next.previous = timeout.previous;
+            }
+            timeout.bucket = null;
+            timeout.previous = null;
+            timeout.next = null;
+        }
+    }
+}
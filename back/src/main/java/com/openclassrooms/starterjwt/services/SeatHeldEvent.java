@@ -0,0 +1,15 @@
+package com.openclassrooms.starterjwt.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Date;
+
+// Published when a seat hold is created, for its expiry to be scheduled
+@Getter
+@AllArgsConstructor
+public class SeatHeldEvent {
+    private final Long holdId;
+
+    private final Date expiresAt;
+}
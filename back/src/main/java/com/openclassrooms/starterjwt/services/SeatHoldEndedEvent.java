@@ -0,0 +1,11 @@
+package com.openclassrooms.starterjwt.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Published when a seat hold is confirmed or released before it expires
+@Getter
+@AllArgsConstructor
+public class SeatHoldEndedEvent {
+    private final Long holdId;
+}
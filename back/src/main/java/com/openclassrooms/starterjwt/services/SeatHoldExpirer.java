@@ -0,0 +1,138 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.models.SeatHold;
+import com.openclassrooms.starterjwt.repository.SeatHoldRepository;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Expires seat holds from a {@link HashedTimingWheel} instead of a scheduled task or a polling query
+ * per hold. The wheel only keeps hold ids in memory: holds committed on this node are added once
+ * their transaction commits, and all persisted holds are scheduled again at startup, so holds that
+ * expired while the node was down are released on the first tick. The database stays the arbiter:
+ * expiring a hold that was confirmed or released in the meantime does nothing, and a hold the database
+ * does not consider expired yet is scheduled again at its stored deadline.
+ */
+@Component
+@Log4j2
+public class SeatHoldExpirer {
+    private final SessionService sessionService;
+
+    private final SeatHoldRepository seatHoldRepository;
+
+    private final HashedTimingWheel<Long> wheel;
+
+    private final long retryDelayMs;
+
+    // Expiries hit the database, so they run here rather than on the wheel thread
+    private final ExecutorService executor;
+
+    private final Map<Long, HashedTimingWheel.Timeout<Long>> timeouts = new ConcurrentHashMap<>();
+
+    private final LongAdder releasedCount = new LongAdder();
+
+    public SeatHoldExpirer(SessionService sessionService,
+                           SeatHoldRepository seatHoldRepository,
+                           @Value("${oc.app.seatHoldTickMs:1000}") long tickMs,
+                           @Value("${oc.app.seatHoldWheelSize:512}") int wheelSize) {
+        this.sessionService = sessionService;
+        this.seatHoldRepository = seatHoldRepository;
+        this.retryDelayMs = tickMs;
+        this.wheel = new HashedTimingWheel<>(tickMs, wheelSize, this::onExpiry, "seat-hold-wheel");
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "seat-hold-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        wheel.start();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSeatHeld(SeatHeldEvent event) {
+        schedule(event.getHoldId(), event.getExpiresAt().getTime());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSeatHoldEnded(SeatHoldEndedEvent event) {
+        HashedTimingWheel.Timeout<Long> timeout = timeouts.remove(event.getHoldId());
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildAfterStartup() {
+        for (SeatHold hold : seatHoldRepository.findAll()) {
+            schedule(hold.getId(), hold.getExpiresAt().getTime());
+        }
+        log.info("{} seat holds scheduled for expiry", timeouts.size());
+    }
+
+    private void schedule(Long holdId, long expiresAtMillis) {
+        HashedTimingWheel.Timeout<Long> previous = timeouts.put(holdId, wheel.schedule(holdId, expiresAtMillis));
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    private void onExpiry(Long holdId) {
+        try {
+            executor.execute(() -> expire(holdId));
+        } catch (RejectedExecutionException e) {
+            timeouts.remove(holdId);
+        }
+    }
+
+    private void expire(Long holdId) {
+        try {
+            if (sessionService.expireHold(holdId)) {
+                releasedCount.increment();
+                timeouts.remove(holdId);
+                return;
+            }
+            // Still persisted means not expired by the database clock yet: wait for the stored deadline
+            Optional<SeatHold> hold = seatHoldRepository.findById(holdId);
+            if (hold.isPresent()) {
+                schedule(holdId, Math.max(hold.get().getExpiresAt().getTime(), System.currentTimeMillis() + retryDelayMs));
+            } else {
+                timeouts.remove(holdId);
+            }
+        } catch (RuntimeException e) {
+            // Left in the wheel for another attempt, so a database hiccup does not keep the seat forever
+            log.warn("Seat hold {} could not be expired, retrying: {}", holdId, e.getMessage());
+            schedule(holdId, System.currentTimeMillis() + retryDelayMs);
+        }
+    }
+
+    public long getReleasedCount() {
+        return releasedCount.sum();
+    }
+
+    public long getPendingCount() {
+        return wheel.getPendingCount();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        wheel.stop();
+        executor.shutdownNow();
+    }
+}
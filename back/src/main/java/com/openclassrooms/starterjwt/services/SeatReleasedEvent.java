@@ -0,0 +1,11 @@
+package com.openclassrooms.starterjwt.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Published when seats may have become free for the waitlist of a session
+@Getter
+@AllArgsConstructor
+public class SeatReleasedEvent {
+    private final Long sessionId;
+}
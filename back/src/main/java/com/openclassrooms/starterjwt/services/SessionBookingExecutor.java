@@ -0,0 +1,194 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Optional single-writer mode for bookings. Commands are routed by session id to one of a fixed number
+ * of stripes, each drained by its own thread, so all bookings of a session are applied one after the
+ * other while different stripes run in parallel. A stripe applies everything queued since its last pass
+ * in one transaction through {@link SessionService#applyBookings}, which keeps hot sessions from queueing
+ * on their row lock. Commands that involve the waitlist, and every command of a batch that fails as a
+ * whole, are run one by one on the synchronous path so each caller still gets its own answer.
+ */
+@Component
+@Log4j2
+public class SessionBookingExecutor {
+    private final SessionService sessionService;
+
+    private final boolean enabled;
+
+    private final int batchSize;
+
+    private final int retryAfterSeconds;
+
+    private final List<BlockingQueue<BookingCommand>> queues = new ArrayList<>();
+
+    private final List<Thread> workers = new ArrayList<>();
+
+    private final LongAdder batchCount = new LongAdder();
+
+    private final LongAdder commandCount = new LongAdder();
+
+    private final LongAdder replayedBatchCount = new LongAdder();
+
+    public SessionBookingExecutor(SessionService sessionService,
+                                  @Value("${oc.app.bookingExecutorEnabled:false}") boolean enabled,
+                                  @Value("${oc.app.bookingExecutorStripes:0}") int stripes,
+                                  @Value("${oc.app.bookingExecutorQueueCapacity:10000}") int queueCapacity,
+                                  @Value("${oc.app.bookingExecutorBatchSize:100}") int batchSize,
+                                  @Value("${oc.app.bookingExecutorRetryAfterSeconds:1}") int retryAfterSeconds) {
+        this.sessionService = sessionService;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.retryAfterSeconds = retryAfterSeconds;
+
+        int stripeCount = stripes > 0 ? stripes : Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i < stripeCount; i++) {
+            queues.add(new LinkedBlockingQueue<>(queueCapacity));
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        for (int i = 0; i < queues.size(); i++) {
+            BlockingQueue<BookingCommand> queue = queues.get(i);
+            Thread worker = new Thread(() -> drain(queue), "session-booking-" + (i + 1));
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public BookingResult participate(Long sessionId, Long userId) {
+        return await(submit(new BookingCommand(BookingCommand.Type.PARTICIPATE, sessionId, userId)));
+    }
+
+    public void noLongerParticipate(Long sessionId, Long userId) {
+        await(submit(new BookingCommand(BookingCommand.Type.LEAVE, sessionId, userId)));
+    }
+
+    public BookingCommand submit(BookingCommand command) {
+        if (!queues.get(stripeOf(command.getSessionId())).offer(command)) {
+            throw new ServiceUnavailableException(retryAfterSeconds);
+        }
+        return command;
+    }
+
+    private int stripeOf(Long sessionId) {
+        int hash = Long.hashCode(sessionId);
+        return Math.floorMod(hash ^ (hash >>> 16), queues.size());
+    }
+
+    // No timeout: once queued, a command is always applied or rejected by its stripe
+    private static BookingResult await(BookingCommand command) {
+        try {
+            return command.getResult().join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    private void drain(BlockingQueue<BookingCommand> queue) {
+        List<BookingCommand> batch = new ArrayList<>(batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            queue.drainTo(batch, batchSize - 1);
+            apply(batch);
+            batch.clear();
+        }
+
+        List<BookingCommand> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        pending.forEach(command -> command.getResult()
+                .completeExceptionally(new ServiceUnavailableException(retryAfterSeconds)));
+    }
+
+    private void apply(List<BookingCommand> batch) {
+        batchCount.increment();
+        commandCount.add(batch.size());
+
+        try {
+            sessionService.applyBookings(batch);
+        } catch (RuntimeException e) {
+            log.warn("Booking batch of {} commands rolled back, replaying one by one: {}", batch.size(), e.getMessage());
+            replayedBatchCount.increment();
+            batch.forEach(this::applyAlone);
+            return;
+        }
+
+        for (BookingCommand command : batch) {
+            if (command.isDeferred()) {
+                applyAlone(command);
+            } else if (command.getFailure() != null) {
+                command.getResult().completeExceptionally(command.getFailure());
+            } else {
+                command.getResult().complete(command.getType() == BookingCommand.Type.PARTICIPATE ? BookingResult.BOOKED : null);
+            }
+        }
+    }
+
+    private void applyAlone(BookingCommand command) {
+        try {
+            if (command.getType() == BookingCommand.Type.PARTICIPATE) {
+                command.getResult().complete(sessionService.participate(command.getSessionId(), command.getUserId()));
+            } else {
+                sessionService.noLongerParticipate(command.getSessionId(), command.getUserId());
+                command.getResult().complete(null);
+            }
+        } catch (RuntimeException e) {
+            command.getResult().completeExceptionally(e);
+        }
+    }
+
+    public long getBatchCount() {
+        return batchCount.sum();
+    }
+
+    public long getCommandCount() {
+        return commandCount.sum();
+    }
+
+    public long getReplayedBatchCount() {
+        return replayedBatchCount.sum();
+    }
+
+    public int getQueueDepth() {
+        return queues.stream().mapToInt(BlockingQueue::size).sum();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.forEach(Thread::interrupt);
+    }
+}
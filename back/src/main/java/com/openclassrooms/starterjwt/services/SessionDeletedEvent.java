@@ -0,0 +1,10 @@
+package com.openclassrooms.starterjwt.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class SessionDeletedEvent {
+    private final Long sessionId;
+}
@@ -0,0 +1,324 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory inverted index over the name and description of sessions, so a search costs a few map
+ * lookups instead of a LIKE '%x%' scan of SESSIONS. Words are lower-cased and stripped of accents;
+ * every word of a query matches as a prefix and a session must match all of them. Hits are ranked
+ * with BM25, words of the name weighing more than words of the description. The index follows
+ * committed creates, updates and deletes, and is rebuilt from the database at startup with the
+ * sessions tokenized in parallel.
+ */
+@Component
+@Log4j2
+public class SessionSearchIndex {
+    public static final int MAX_QUERY_TERMS = 10;
+
+    private static final int NAME_WEIGHT = 3;
+
+    // Usual BM25 parameters: term frequency saturation and length normalization
+    private static final double K1 = 1.2;
+
+    private static final double B = 0.75;
+
+    // Bounds the work of a short prefix such as "a"
+    private static final int MAX_PREFIX_TERMS = 200;
+
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private final SessionRepository sessionRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Guarded by lock: term -> session id -> weighted frequency of the term in the session
+    private final NavigableMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+
+    // Guarded by lock: kept per session to drop its postings when it changes
+    private final Map<Long, Document> documents = new HashMap<>();
+
+    private long totalLength;
+
+    // Guarded by lock: sessions changed while a rebuild reads its snapshot, which must not undo them
+    private Set<Long> changedDuringRebuild;
+
+    private final LongAdder queryCount = new LongAdder();
+
+    public SessionSearchIndex(SessionRepository sessionRepository) {
+        this.sessionRepository = sessionRepository;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSessionTextChanged(SessionTextChangedEvent event) {
+        index(event.getSessionId(), event.getName(), event.getDescription());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSessionDeleted(SessionDeletedEvent event) {
+        remove(event.getSessionId());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            changedDuringRebuild = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Map<Long, Document> snapshot;
+        try {
+            // Tokenizing is the costly part, done off the lock and on all cores
+            snapshot = sessionRepository.findAllText().parallelStream()
+                    .collect(Collectors.toConcurrentMap(
+                            row -> ((Number) row[0]).longValue(),
+                            row -> Document.of((String) row[1], (String) row[2])));
+        } catch (RuntimeException e) {
+            // Search still follows the changes made from now on
+            log.warn("Session search index could not be rebuilt: {}", e.getMessage());
+            lock.writeLock().lock();
+            try {
+                changedDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (Long sessionId : new ArrayList<>(documents.keySet())) {
+                if (!changedDuringRebuild.contains(sessionId)) {
+                    removeDocument(sessionId);
+                }
+            }
+            for (Map.Entry<Long, Document> entry : snapshot.entrySet()) {
+                if (!changedDuringRebuild.contains(entry.getKey())) {
+                    putDocument(entry.getKey(), entry.getValue());
+                }
+            }
+            changedDuringRebuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("{} sessions indexed for search", snapshot.size());
+    }
+
+    public void index(Long sessionId, String name, String description) {
+        Document document = Document.of(name, description);
+        lock.writeLock().lock();
+        try {
+            markChanged(sessionId);
+            removeDocument(sessionId);
+            putDocument(sessionId, document);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long sessionId) {
+        lock.writeLock().lock();
+        try {
+            markChanged(sessionId);
+            removeDocument(sessionId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ids of the sessions matching every word of the query, best first, ties by id.
+     */
+    public List<Long> search(String query, int limit) {
+        List<String> queryTerms = tokens(query).stream().distinct().limit(MAX_QUERY_TERMS).collect(Collectors.toList());
+        if (queryTerms.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        queryCount.increment();
+
+        Map<Long, Double> scores;
+        lock.readLock().lock();
+        try {
+            scores = score(queryTerms);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Comparator<Map.Entry<Long, Double>> ranking = Map.Entry.<Long, Double>comparingByValue()
+                .thenComparing(Map.Entry.<Long, Double>comparingByKey().reversed());
+        // Worst of the kept hits on top, so the heap never holds more than limit entries
+        PriorityQueue<Map.Entry<Long, Double>> best = new PriorityQueue<>(ranking);
+        for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+            best.add(entry);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        List<Long> sessionIds = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            sessionIds.add(best.poll().getKey());
+        }
+        Collections.reverse(sessionIds);
+        return sessionIds;
+    }
+
+    private Map<Long, Double> score(List<String> queryTerms) {
+        int documentCount = documents.size();
+        if (documentCount == 0) {
+            return Collections.emptyMap();
+        }
+        double averageLength = (double) totalLength / documentCount;
+
+        Map<Long, Double> scores = null;
+        for (String queryTerm : queryTerms) {
+            // The words starting with the query word count as one term, a whole word weighing more
+            // than the longer words it is a prefix of
+            Map<Long, Double> frequencies = new HashMap<>();
+            int expanded = 0;
+            for (Map.Entry<String, Map<Long, Integer>> term
+                    : postings.subMap(queryTerm, true, queryTerm + Character.MAX_VALUE, false).entrySet()) {
+                if (++expanded > MAX_PREFIX_TERMS) {
+                    break;
+                }
+                double weight = term.getKey().length() == queryTerm.length() ? 1 : 0.5;
+                term.getValue().forEach((sessionId, frequency) -> frequencies.merge(sessionId, weight * frequency, Double::sum));
+            }
+
+            int matches = frequencies.size();
+            double idf = Math.log(1 + (documentCount - matches + 0.5) / (matches + 0.5));
+            Map<Long, Double> termScores = new HashMap<>();
+            for (Map.Entry<Long, Double> entry : frequencies.entrySet()) {
+                Long sessionId = entry.getKey();
+                if (scores != null && !scores.containsKey(sessionId)) {
+                    continue;
+                }
+                double frequency = entry.getValue();
+                double lengthRatio = documents.get(sessionId).length / averageLength;
+                double score = idf * frequency * (K1 + 1) / (frequency + K1 * (1 - B + B * lengthRatio));
+                termScores.put(sessionId, scores == null ? score : scores.get(sessionId) + score);
+            }
+            scores = termScores;
+            if (scores.isEmpty()) {
+                break;
+            }
+        }
+        return scores;
+    }
+
+    private void markChanged(Long sessionId) {
+        if (changedDuringRebuild != null) {
+            changedDuringRebuild.add(sessionId);
+        }
+    }
+
+    private void putDocument(Long sessionId, Document document) {
+        documents.put(sessionId, document);
+        document.frequencies.forEach((term, frequency) ->
+                postings.computeIfAbsent(term, key -> new HashMap<>()).put(sessionId, frequency));
+        totalLength += document.length;
+    }
+
+    private void removeDocument(Long sessionId) {
+        Document document = documents.remove(sessionId);
+        if (document == null) {
+            return;
+        }
+        for (String term : document.frequencies.keySet()) {
+            Map<Long, Integer> sessions = postings.get(term);
+            sessions.remove(sessionId);
+            if (sessions.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+        totalLength -= document.length;
+    }
+
+    private static List<String> tokens(String text) {
+        if (text == null || text.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        List<String> tokens = new ArrayList<>();
+        for (String token : SEPARATORS.split(folded)) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    public int getSessionCount() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getTermCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getQueryCount() {
+        return queryCount.sum();
+    }
+
+    private static final class Document {
+        private final Map<String, Integer> frequencies;
+
+        private final int length;
+
+        private Document(Map<String, Integer> frequencies, int length) {
+            this.frequencies = frequencies;
+            this.length = length;
+        }
+
+        static Document of(String name, String description) {
+            Map<String, Integer> frequencies = new HashMap<>();
+            int length = 0;
+            for (String token : tokens(name)) {
+                frequencies.merge(token, NAME_WEIGHT, Integer::sum);
+                length += NAME_WEIGHT;
+            }
+            for (String token : tokens(description)) {
+                frequencies.merge(token, 1, Integer::sum);
+                length++;
+            }
+            return new Document(frequencies, length);
+        }
+    }
+}
@@ -1,78 +1,706 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.dto.SessionFilterDto;
+import com.openclassrooms.starterjwt.dto.SessionPatchDto;
 import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.ConflictException;
 import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.models.ParticipationId;
+import com.openclassrooms.starterjwt.models.SeatHold;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.models.WaitlistEntry;
+import com.openclassrooms.starterjwt.repository.ParticipationRepository;
+import com.openclassrooms.starterjwt.repository.SeatHoldRepository;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.repository.WaitlistRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 public class SessionService {
+    public static final int MAX_PAGE_SIZE = 100;
+
+    public static final int MAX_UPDATE_ATTEMPTS = 3;
+
+    public static final int MAX_ENROLLMENT_SIZE = 1000;
+
+    public static final int MAX_RECURRING_SESSIONS = 1000;
+
     private final SessionRepository sessionRepository;
 
     private final UserRepository userRepository;
 
-    public SessionService(SessionRepository sessionRepository, UserRepository userRepository) {
+    private final ParticipationRepository participationRepository;
+
+    private final WaitlistRepository waitlistRepository;
+
+    private final SeatHoldRepository seatHoldRepository;
+
+    private final SessionSearchIndex searchIndex;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public SessionService(SessionRepository sessionRepository,
+                          UserRepository userRepository,
+                          ParticipationRepository participationRepository,
+                          WaitlistRepository waitlistRepository,
+                          SeatHoldRepository seatHoldRepository,
+                          SessionSearchIndex searchIndex,
+                          ApplicationEventPublisher eventPublisher,
+                          PlatformTransactionManager transactionManager) {
         this.sessionRepository = sessionRepository;
         this.userRepository = userRepository;
+        this.participationRepository = participationRepository;
+        this.waitlistRepository = waitlistRepository;
+        this.seatHoldRepository = seatHoldRepository;
+        this.searchIndex = searchIndex;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     public Session create(Session session) {
-        return this.sessionRepository.save(session);
+        session.setParticipantCount(session.getUsers() == null ? 0 : session.getUsers().size());
+        checkCapacity(session);
+        Session saved = this.sessionRepository.save(session);
+        publishTextChanged(saved);
+        return saved;
+    }
+
+    /**
+     * Creates one session per occurrence of the weekly schedule, copied from the template and without
+     * participants. Session ids come from a pooled sequence, so the rows go out as JDBC batches of
+     * hibernate.jdbc.batch_size inserts when the transaction flushes.
+     */
+    @Transactional
+    public List<Session> createRecurring(Session template, WeeklySchedule schedule) {
+        List<Date> dates = schedule.occurrences(ZoneId.systemDefault(), MAX_RECURRING_SESSIONS);
+        if (dates.isEmpty() || dates.size() > MAX_RECURRING_SESSIONS) {
+            throw new BadRequestException();
+        }
+
+        List<Session> sessions = new ArrayList<>(dates.size());
+        for (Date date : dates) {
+            sessions.add(Session.builder()
+                    .name(template.getName())
+                    .description(template.getDescription())
+                    .teacher(template.getTeacher())
+                    .capacity(template.getCapacity())
+                    .date(date)
+                    .build());
+        }
+        List<Session> saved = this.sessionRepository.saveAll(sessions);
+        saved.forEach(this::publishTextChanged);
+        return saved;
     }
 
+    @Transactional
     public void delete(Long id) {
+        this.waitlistRepository.deleteBySessionId(id);
+        this.seatHoldRepository.deleteBySessionId(id);
         this.sessionRepository.deleteById(id);
+        this.eventPublisher.publishEvent(new SessionDeletedEvent(id));
     }
 
     public List<Session> findAll() {
         return this.sessionRepository.findAll();
     }
 
+    public List<Session> findAll(SessionFilterDto filter) {
+        if (filter.isEmpty()) {
+            return findAll();
+        }
+        checkFilter(filter);
+        return this.sessionRepository.findFiltered(filter, null, null, null);
+    }
+
+    /**
+     * Returns up to {@code limit} sessions ordered by (date, id), starting after the given cursor.
+     * The cursor is opaque to clients: base64url of "dateMillis:id" of the last session returned.
+     */
+    public SessionPage findPage(String cursor, int limit) {
+        return findPage(cursor, limit, new SessionFilterDto());
+    }
+
+    /**
+     * Same paging over the sessions matching the filter. The cursor keeps the same format, so the
+     * filter has to be sent again with every page.
+     */
+    public SessionPage findPage(String cursor, int limit, SessionFilterDto filter) {
+        if (limit <= 0) {
+            throw new BadRequestException();
+        }
+        checkFilter(filter);
+        int pageSize = Math.min(limit, MAX_PAGE_SIZE);
+        // One extra row tells whether another page exists without a count query
+        PageRequest pageRequest = PageRequest.of(0, pageSize + 1);
+        long[] position = cursor == null || cursor.isEmpty() ? null : decodeCursor(cursor);
+
+        List<Session> sessions;
+        if (!filter.isEmpty()) {
+            sessions = this.sessionRepository.findFiltered(filter,
+                    position == null ? null : new Date(position[0]),
+                    position == null ? null : position[1],
+                    pageSize + 1);
+        } else if (position == null) {
+            sessions = this.sessionRepository.findFirstPage(pageRequest);
+        } else {
+            sessions = this.sessionRepository.findPageAfter(new Date(position[0]), position[1], pageRequest);
+        }
+
+        if (sessions.size() <= pageSize) {
+            return new SessionPage(sessions, null);
+        }
+
+        List<Session> page = sessions.subList(0, pageSize);
+        return new SessionPage(page, encodeCursor(page.get(pageSize - 1)));
+    }
+
+    /**
+     * Sessions matching every word of the query, best match first, read from the search index and
+     * then loaded in one query.
+     */
+    public List<Session> search(String query, int limit) {
+        if (limit <= 0) {
+            throw new BadRequestException();
+        }
+        List<Long> sessionIds = this.searchIndex.search(query, Math.min(limit, MAX_PAGE_SIZE));
+        if (sessionIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Map<Long, Session> sessions = this.sessionRepository.findAllById(sessionIds).stream()
+                .collect(Collectors.toMap(Session::getId, Function.identity()));
+        // Rank order; a session deleted since the lookup is skipped
+        return sessionIds.stream().map(sessions::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    private void checkFilter(SessionFilterDto filter) {
+        if (filter.getFrom() != null && filter.getTo() != null && filter.getFrom().isAfter(filter.getTo())) {
+            throw new BadRequestException();
+        }
+    }
+
+    private String encodeCursor(Session session) {
+        String position = session.getDate().getTime() + ":" + session.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private long[] decodeCursor(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = position.indexOf(':');
+            if (separator < 0) {
+                throw new BadRequestException();
+            }
+            return new long[] {
+                    Long.parseLong(position.substring(0, separator)),
+                    Long.parseLong(position.substring(separator + 1))
+            };
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException();
+        }
+    }
+
+    /**
+     * Participant ids per session, read in one IN query on the join table.
+     * Sessions without participants are absent from the map.
+     */
+    public Map<Long, List<Long>> findParticipantIds(Collection<Long> sessionIds) {
+        if (sessionIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<Long, List<Long>> participantIds = new HashMap<>();
+        for (Object[] row : this.sessionRepository.findParticipantIds(sessionIds)) {
+            participantIds.computeIfAbsent(((Number) row[0]).longValue(), k -> new ArrayList<>())
+                    .add(((Number) row[1]).longValue());
+        }
+        return participantIds;
+    }
+
     public Session getById(Long id) {
         return this.sessionRepository.findById(id).orElse(null);
     }
 
+    /**
+     * Applies the changes to the current row under its version. When a concurrent booking or update
+     * wins the race, the session is reloaded and the changes applied again, at most
+     * {@link #MAX_UPDATE_ATTEMPTS} times. Participants are only replaced when the changes carry them,
+     * and a client sending a stale version gets a conflict instead of overwriting newer data.
+     */
     public Session update(Long id, Session session) {
-        session.setId(id);
-        return this.sessionRepository.save(session);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return this.transactionTemplate.execute(status -> applyUpdate(id, session));
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= MAX_UPDATE_ATTEMPTS) {
+                    throw new ConflictException();
+                }
+            }
+        }
+    }
+
+    private Session applyUpdate(Long id, Session changes) {
+        Session current = this.sessionRepository.findById(id).orElseThrow(NotFoundException::new);
+        if (changes.getVersion() != null && !changes.getVersion().equals(current.getVersion())) {
+            throw new ConflictException();
+        }
+        Integer previousCapacity = current.getCapacity();
+
+        current.setName(changes.getName())
+                .setDate(changes.getDate())
+                .setDescription(changes.getDescription())
+                .setTeacher(changes.getTeacher())
+                .setCapacity(changes.getCapacity());
+        if (changes.getUsers() != null) {
+            // Held seats stay taken whatever the new participants
+            current.setUsers(changes.getUsers())
+                    .setParticipantCount(changes.getUsers().size() + (int) this.seatHoldRepository.countBySessionId(id));
+            // A waiter made a participant here must leave the queue, or promoting them would fail for good
+            List<Long> userIds = changes.getUsers().stream().map(User::getId).filter(Objects::nonNull).collect(Collectors.toList());
+            if (!userIds.isEmpty()) {
+                this.waitlistRepository.deleteEntries(id, userIds);
+            }
+        }
+        checkCapacity(current);
+        Session saved = this.sessionRepository.saveAndFlush(current);
+        publishTextChanged(saved);
+
+        // More room, or fewer participants: waiters may now get a seat
+        if (changes.getUsers() != null || !Objects.equals(previousCapacity, saved.getCapacity())) {
+            this.eventPublisher.publishEvent(new SeatReleasedEvent(id));
+        }
+        return saved;
     }
 
-    public void participate(Long id, Long userId) {
-        Session session = this.sessionRepository.findById(id).orElse(null);
-        User user = this.userRepository.findById(userId).orElse(null);
-        if (session == null || user == null) {
+    /**
+     * Writes only the fields present in the patch, in one UPDATE that never reads the session, its
+     * participants or PARTICIPATE, so its cost does not grow with the number of participants. The
+     * version is bumped like any other write and checked when the patch carries one.
+     */
+    @Transactional
+    public Session patch(Long id, SessionPatchDto patch) {
+        int updated;
+        try {
+            updated = this.sessionRepository.patch(id, patch);
+        } catch (DataIntegrityViolationException e) {
+            // Unknown teacher
+            throw new BadRequestException();
+        }
+
+        if (updated == 0) {
+            Session current = this.sessionRepository.findById(id).orElseThrow(NotFoundException::new);
+            if (patch.getVersion() != null && !patch.getVersion().equals(current.getVersion())) {
+                throw new ConflictException();
+            }
+            // Capacity below the seats already taken
+            throw new BadRequestException();
+        }
+
+        if (patch.getCapacity() != null) {
+            this.eventPublisher.publishEvent(new SeatReleasedEvent(id));
+        }
+        Session patched = this.sessionRepository.findById(id).orElseThrow(NotFoundException::new);
+        if (patch.getName() != null || patch.getDescription() != null) {
+            publishTextChanged(patched);
+        }
+        return patched;
+    }
+
+    // Applied to the search index once the transaction commits
+    private void publishTextChanged(Session session) {
+        this.eventPublisher.publishEvent(new SessionTextChangedEvent(session.getId(), session.getName(), session.getDescription()));
+    }
+
+    private void checkCapacity(Session session) {
+        if (session.getCapacity() != null && session.getParticipantCount() > session.getCapacity()) {
+            throw new BadRequestException();
+        }
+    }
+
+    /**
+     * Books a seat with a conditional UPDATE and one INSERT ... SELECT. When the session is full, or
+     * others are already waiting, the user joins the end of its waitlist instead. A user holding a
+     * seat on the session books that seat rather than a second one.
+     */
+    @Transactional
+    public BookingResult participate(Long id, Long userId) {
+        Optional<SeatHold> hold = this.seatHoldRepository.findBySessionIdAndUserId(id, userId);
+        if (hold.isPresent() && this.seatHoldRepository.deleteActiveHold(hold.get().getId(), new Date()) > 0) {
+            bookHeldSeat(id, userId, hold.get().getId());
+            return BookingResult.BOOKED;
+        }
+
+        if (this.sessionRepository.claimSeat(id) > 0) {
+            int inserted;
+            try {
+                inserted = this.participationRepository.insertParticipation(id, userId);
+            } catch (DataIntegrityViolationException e) {
+                throw new BadRequestException();
+            }
+
+            // Any failure after the claim rolls it back with the transaction
+            if (inserted == 0) {
+                throw new NotFoundException();
+            }
+            return BookingResult.BOOKED;
+        }
+
+        if (!this.sessionRepository.existsById(id)) {
             throw new NotFoundException();
         }
+        if (this.participationRepository.existsById(new ParticipationId(id, userId))) {
+            throw new BadRequestException();
+        }
 
-        boolean alreadyParticipate = session.getUsers().stream().anyMatch(o -> o.getId().equals(userId));
-        if(alreadyParticipate) {
+        int queued;
+        try {
+            queued = this.waitlistRepository.insertEntry(id, userId);
+        } catch (DataIntegrityViolationException e) {
             throw new BadRequestException();
         }
+        if (queued == 0) {
+            throw new NotFoundException();
+        }
+        // Cheap when the session is full; otherwise seats are free but a promotion is pending or was lost
+        this.eventPublisher.publishEvent(new SeatReleasedEvent(id));
+        return BookingResult.WAITLISTED;
+    }
+
+    /**
+     * Enrolls a group in one transaction. The user ids are checked with one query, the seats are taken
+     * under the session row lock, and the new rows go to PARTICIPATE as one JDBC batch. Users beyond
+     * the free seats get {@link EnrollmentStatus#NO_SEAT}, in the order given, and a group never
+     * takes seats ahead of the waitlist. Users holding a seat on the session book that seat.
+     *
+     * @return the status of every distinct user id, in request order
+     */
+    @Transactional
+    public Map<Long, EnrollmentStatus> participateAll(Long id, List<Long> userIds) {
+        if (userIds == null || userIds.isEmpty() || userIds.size() > MAX_ENROLLMENT_SIZE || userIds.contains(null)) {
+            throw new BadRequestException();
+        }
+        Session session = this.sessionRepository.findByIdForUpdate(id).orElseThrow(NotFoundException::new);
+
+        Set<Long> requested = new LinkedHashSet<>(userIds);
+        Set<Long> existingUserIds = new HashSet<>(this.userRepository.findExistingIds(requested));
+        Set<Long> participants = new HashSet<>(findParticipantIds(List.of(id)).getOrDefault(id, Collections.emptyList()));
+        int freeSeats = session.getCapacity() == null
+                ? Integer.MAX_VALUE : Math.max(session.getCapacity() - session.getParticipantCount(), 0);
+        if (freeSeats > 0 && !this.waitlistRepository.findSessionIdsWithWaiters(List.of(id)).isEmpty()) {
+            freeSeats = 0;
+        }
+
+        Map<Long, Long> holdIds = new HashMap<>();
+        for (SeatHold hold : this.seatHoldRepository.findBySessionIdIn(List.of(id))) {
+            holdIds.put(hold.getUserId(), hold.getId());
+        }
 
-        session.getUsers().add(user);
+        Map<Long, EnrollmentStatus> results = new LinkedHashMap<>();
+        List<ParticipationId> inserts = new ArrayList<>();
+        int heldSeats = 0;
+        Date now = new Date();
+        for (Long userId : requested) {
+            Long holdId = holdIds.get(userId);
+            if (!existingUserIds.contains(userId)) {
+                results.put(userId, EnrollmentStatus.USER_NOT_FOUND);
+            } else if (participants.contains(userId)) {
+                results.put(userId, EnrollmentStatus.ALREADY_PARTICIPATING);
+            } else if (holdId != null && this.seatHoldRepository.deleteActiveHold(holdId, now) > 0) {
+                inserts.add(new ParticipationId(id, userId));
+                heldSeats++;
+                results.put(userId, EnrollmentStatus.BOOKED);
+                this.eventPublisher.publishEvent(new SeatHoldEndedEvent(holdId));
+            } else if (inserts.size() - heldSeats >= freeSeats) {
+                results.put(userId, EnrollmentStatus.NO_SEAT);
+            } else {
+                inserts.add(new ParticipationId(id, userId));
+                results.put(userId, EnrollmentStatus.BOOKED);
+            }
+        }
 
-        this.sessionRepository.save(session);
+        if (!inserts.isEmpty()) {
+            this.participationRepository.batchInsert(inserts);
+            // Written with its version bump when the transaction flushes; held seats are already counted
+            session.setParticipantCount(session.getParticipantCount() + inserts.size() - heldSeats);
+        }
+        return results;
     }
 
+    /**
+     * Gives up a seat, or a place on the waitlist. A freed seat is handed to the waitlist in the
+     * background once this transaction commits.
+     */
+    @Transactional
     public void noLongerParticipate(Long id, Long userId) {
-        Session session = this.sessionRepository.findById(id).orElse(null);
-        if (session == null) {
+        if (this.sessionRepository.releaseSeat(id, userId) > 0) {
+            // Lost to a concurrent cancellation between the check and the delete: undo the release
+            if (this.participationRepository.deleteParticipation(id, userId) == 0) {
+                throw new BadRequestException();
+            }
+            this.eventPublisher.publishEvent(new SeatReleasedEvent(id));
+            return;
+        }
+
+        if (this.waitlistRepository.deleteEntry(id, userId) > 0) {
+            return;
+        }
+        if (!this.sessionRepository.existsById(id)) {
+            throw new NotFoundException();
+        }
+        throw new BadRequestException();
+    }
+
+    /**
+     * Sets a seat aside for the user until the hold is confirmed, released or expires, for a checkout
+     * to complete. The seat is claimed like a booking, so holds count against the capacity and come
+     * after the waitlist. Once this commits, {@link SeatHoldExpirer} schedules the expiry.
+     */
+    @Transactional
+    public SeatHold holdSeat(Long id, Long userId, long durationMs) {
+        if (durationMs <= 0) {
+            throw new BadRequestException();
+        }
+        if (this.participationRepository.existsById(new ParticipationId(id, userId))) {
+            throw new BadRequestException();
+        }
+        if (this.sessionRepository.claimSeat(id) == 0) {
+            if (!this.sessionRepository.existsById(id)) {
+                throw new NotFoundException();
+            }
+            throw new ConflictException();
+        }
+
+        int inserted;
+        try {
+            inserted = this.seatHoldRepository.insertHold(id, userId, new Date(System.currentTimeMillis() + durationMs));
+        } catch (DataIntegrityViolationException e) {
+            throw new BadRequestException();
+        }
+        if (inserted == 0) {
             throw new NotFoundException();
         }
 
-        boolean alreadyParticipate = session.getUsers().stream().anyMatch(o -> o.getId().equals(userId));
-        if(!alreadyParticipate) {
+        SeatHold hold = this.seatHoldRepository.findBySessionIdAndUserId(id, userId).orElseThrow(NotFoundException::new);
+        this.eventPublisher.publishEvent(new SeatHeldEvent(hold.getId(), hold.getExpiresAt()));
+        return hold;
+    }
+
+    /**
+     * Turns the user's hold into a participation. Its seat is already counted, so only the join
+     * table changes. A hold past its expiry can no longer be confirmed.
+     */
+    @Transactional
+    public void confirmHold(Long id, Long userId) {
+        SeatHold hold = this.seatHoldRepository.findBySessionIdAndUserId(id, userId).orElseThrow(NotFoundException::new);
+        Date now = new Date();
+        if (this.seatHoldRepository.deleteActiveHold(hold.getId(), now) == 0) {
+            // Expired holds are left to the expirer, which gives their seat back
+            throw hold.getExpiresAt().after(now) ? new NotFoundException() : new ConflictException();
+        }
+        bookHeldSeat(id, userId, hold.getId());
+    }
+
+    // Once the hold row is deleted: its seat is already counted, so only the join table changes
+    private void bookHeldSeat(Long id, Long userId, Long holdId) {
+        int inserted;
+        try {
+            inserted = this.participationRepository.insertParticipation(id, userId);
+        } catch (DataIntegrityViolationException e) {
             throw new BadRequestException();
         }
+        if (inserted == 0) {
+            throw new NotFoundException();
+        }
+        this.sessionRepository.incrementVersion(id);
+        this.eventPublisher.publishEvent(new SeatHoldEndedEvent(holdId));
+    }
 
-        session.setUsers(session.getUsers().stream().filter(user -> !user.getId().equals(userId)).collect(Collectors.toList()));
+    @Transactional
+    public void releaseHold(Long id, Long userId) {
+        SeatHold hold = this.seatHoldRepository.findBySessionIdAndUserId(id, userId).orElseThrow(NotFoundException::new);
+        if (this.seatHoldRepository.deleteHold(hold.getId()) == 0) {
+            throw new NotFoundException();
+        }
+        this.sessionRepository.releaseHeldSeat(id);
+        this.eventPublisher.publishEvent(new SeatHoldEndedEvent(hold.getId()));
+        this.eventPublisher.publishEvent(new SeatReleasedEvent(id));
+    }
+
+    /**
+     * Deletes a hold past its expiry and gives its seat back. A hold confirmed or released in the
+     * meantime is left alone.
+     *
+     * @return whether a seat was given back
+     */
+    @Transactional
+    public boolean expireHold(Long holdId) {
+        Optional<SeatHold> hold = this.seatHoldRepository.findById(holdId);
+        if (hold.isEmpty() || this.seatHoldRepository.deleteExpiredHold(holdId, new Date()) == 0) {
+            return false;
+        }
+        this.sessionRepository.releaseHeldSeat(hold.get().getSessionId());
+        this.eventPublisher.publishEvent(new SeatReleasedEvent(hold.get().getSessionId()));
+        return true;
+    }
+
+    /**
+     * Moves the head of the waitlist into a free seat, in its own transaction. The seat is claimed
+     * first, so promotions of one session run one at a time under its row lock and always take the
+     * oldest entry left.
+     *
+     * @return the promoted user id, or null when there is no free seat or nobody waiting
+     */
+    public Long promoteNext(Long sessionId) {
+        return this.transactionTemplate.execute(status -> {
+            if (this.sessionRepository.claimSeatForWaitlist(sessionId) == 0) {
+                return null;
+            }
+
+            boolean droppedParticipants = false;
+            while (true) {
+                Optional<WaitlistEntry> head = this.waitlistRepository.findFirstBySessionIdOrderByIdAsc(sessionId);
+                if (head.isEmpty()) {
+                    if (droppedParticipants) {
+                        // Keeps the dropped entries deleted, so only the claimed seat is given back
+                        this.sessionRepository.releaseHeldSeat(sessionId);
+                    } else {
+                        // The last waiters left after the claim: give the seat back
+                        status.setRollbackOnly();
+                    }
+                    return null;
+                }
+
+                Long userId = head.get().getUserId();
+                if (this.waitlistRepository.deleteEntry(sessionId, userId) == 0) {
+                    continue;
+                }
+                // Already seated through another path: the entry is dropped and the seat goes to the next waiter
+                if (this.participationRepository.existsById(new ParticipationId(sessionId, userId))) {
+                    droppedParticipants = true;
+                    continue;
+                }
+                if (this.participationRepository.insertParticipation(sessionId, userId) > 0) {
+                    return userId;
+                }
+            }
+        });
+    }
+
+    /**
+     * Applies a batch of booking commands in one transaction, in order, with the same rules as
+     * {@link #participate} and {@link #noLongerParticipate}. The state of every session involved is read
+     * once, decisions are taken in memory, and the join-table writes go out as two JDBC batches.
+     * Meant for a single writer per session: a concurrent change made through another path fails the
+     * version check of the session rows and rolls the whole batch back.
+     * Commands that touch the waitlist (no free seat, or leaving without a seat) or a held seat are
+     * only marked deferred, for the caller to run through the single-command methods in batch order;
+     * every later command of the same session is deferred with them so the replay keeps that order.
+     */
+    @Transactional
+    public void applyBookings(List<BookingCommand> commands) {
+        Set<Long> sessionIds = new HashSet<>();
+        Set<Long> userIds = new HashSet<>();
+        for (BookingCommand command : commands) {
+            sessionIds.add(command.getSessionId());
+            if (command.getType() == BookingCommand.Type.PARTICIPATE) {
+                userIds.add(command.getUserId());
+            }
+        }
+
+        Map<Long, Session> sessions = this.sessionRepository.findAllById(sessionIds).stream()
+                .collect(Collectors.toMap(Session::getId, Function.identity()));
+        Set<Long> existingUserIds = userIds.isEmpty()
+                ? Collections.emptySet() : new HashSet<>(this.userRepository.findExistingIds(userIds));
+        Set<Long> sessionsWithWaiters = sessions.isEmpty()
+                ? Collections.emptySet() : new HashSet<>(this.waitlistRepository.findSessionIdsWithWaiters(sessions.keySet()));
+        Map<Long, Set<Long>> participants = new HashMap<>();
+        findParticipantIds(sessions.keySet()).forEach((id, ids) -> participants.put(id, new HashSet<>(ids)));
+        Set<ParticipationId> holds = sessions.isEmpty() ? Collections.emptySet()
+                : this.seatHoldRepository.findBySessionIdIn(sessions.keySet()).stream()
+                        .map(hold -> new ParticipationId(hold.getSessionId(), hold.getUserId()))
+                        .collect(Collectors.toSet());
+
+        // Net effect on the join table: joining then leaving in the same batch writes nothing
+        Set<ParticipationId> inserts = new LinkedHashSet<>();
+        Set<ParticipationId> deletes = new LinkedHashSet<>();
+        Set<Long> releasedSessionIds = new HashSet<>();
+        // Deferred commands replay after this batch, so later commands of their session must wait too
+        Set<Long> deferredSessionIds = new HashSet<>();
+        for (BookingCommand command : commands) {
+            Session session = sessions.get(command.getSessionId());
+            if (session == null) {
+                command.fail(new NotFoundException());
+                continue;
+            }
+            if (deferredSessionIds.contains(session.getId())) {
+                command.defer();
+                continue;
+            }
+
+            Set<Long> sessionParticipants = participants.computeIfAbsent(session.getId(), k -> new HashSet<>());
+            ParticipationId participation = new ParticipationId(session.getId(), command.getUserId());
+            if (command.getType() == BookingCommand.Type.PARTICIPATE) {
+                if (!existingUserIds.contains(command.getUserId())) {
+                    command.fail(new NotFoundException());
+                } else if (sessionParticipants.contains(command.getUserId())) {
+                    command.fail(new BadRequestException());
+                } else if (holds.contains(participation) || sessionsWithWaiters.contains(session.getId())
+                        || (session.getCapacity() != null && session.getParticipantCount() >= session.getCapacity())) {
+                    command.defer();
+                    deferredSessionIds.add(session.getId());
+                } else {
+                    sessionParticipants.add(command.getUserId());
+                    session.setParticipantCount(session.getParticipantCount() + 1);
+                    if (!deletes.remove(participation)) {
+                        inserts.add(participation);
+                    }
+                }
+            } else if (sessionParticipants.remove(command.getUserId())) {
+                session.setParticipantCount(session.getParticipantCount() - 1);
+                if (!inserts.remove(participation)) {
+                    deletes.add(participation);
+                }
+                releasedSessionIds.add(session.getId());
+            } else {
+                command.defer();
+                deferredSessionIds.add(session.getId());
+            }
+        }
 
-        this.sessionRepository.save(session);
+        this.participationRepository.batchDelete(deletes);
+        this.participationRepository.batchInsert(inserts);
+        // Dirty sessions are written with their version check here, before the batch is reported
+        this.sessionRepository.flush();
+        releasedSessionIds.forEach(id -> this.eventPublisher.publishEvent(new SeatReleasedEvent(id)));
     }
 }
@@ -0,0 +1,15 @@
+package com.openclassrooms.starterjwt.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Published when a session is created or its name or description may have changed
+@Getter
+@AllArgsConstructor
+public class SessionTextChangedEvent {
+    private final Long sessionId;
+
+    private final String name;
+
+    private final String description;
+}
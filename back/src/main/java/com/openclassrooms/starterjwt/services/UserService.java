@@ -1,22 +1,61 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.UnknownReferenceException;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.services.UserDetailsCache;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 @Service
 public class UserService {
     private final UserRepository userRepository;
 
-    public UserService(UserRepository userRepository) {
+    private final UserDetailsCache userDetailsCache;
+
+    public UserService(UserRepository userRepository, UserDetailsCache userDetailsCache) {
         this.userRepository = userRepository;
+        this.userDetailsCache = userDetailsCache;
     }
 
     public void delete(Long id) {
         this.userRepository.deleteById(id);
+        // Evicted once the delete has committed; a login that read the row before then is not cached
+        this.userDetailsCache.evictById(id);
     }
 
     public User findById(Long id) {
         return this.userRepository.findById(id).orElse(null);
     }
+
+    /**
+     * Users for relations that only need their foreign key, such as the participants of a session.
+     * Existence is checked with one id query and the returned users are uninitialized references, so
+     * nothing else is loaded. Duplicate ids are kept once.
+     *
+     * @throws UnknownReferenceException listing the ids that match no user
+     */
+    public List<User> getReferences(List<Long> ids) {
+        Set<Long> requested = new LinkedHashSet<>(ids);
+        if (requested.contains(null)) {
+            throw new BadRequestException();
+        }
+        if (requested.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Set<Long> existingIds = new HashSet<>(this.userRepository.findExistingIds(requested));
+        List<Long> missingIds = requested.stream().filter(id -> !existingIds.contains(id)).collect(Collectors.toList());
+        if (!missingIds.isEmpty()) {
+            throw new UnknownReferenceException("user", missingIds);
+        }
+        return requested.stream().map(this.userRepository::getById).collect(Collectors.toList());
+    }
 }
@@ -0,0 +1,99 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.repository.WaitlistRepository;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PreDestroy;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hands freed seats to the waitlist in the background, once the cancellation has committed, so the
+ * cancel request does not wait for it. Releases of the same session are coalesced: while a session is
+ * queued, further releases add nothing, and a run promotes waiters until the seats or the waiters
+ * run out. Sessions with waiters are also checked at startup, in case a node stopped mid-way.
+ */
+@Component
+@Log4j2
+public class WaitlistPromoter {
+    private final SessionService sessionService;
+
+    private final WaitlistRepository waitlistRepository;
+
+    private final ExecutorService executor;
+
+    private final Set<Long> pendingSessionIds = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder promotedCount = new LongAdder();
+
+    public WaitlistPromoter(SessionService sessionService,
+                            WaitlistRepository waitlistRepository,
+                            @Value("${oc.app.waitlistPromotionThreads:2}") int threads) {
+        this.sessionService = sessionService;
+        this.waitlistRepository = waitlistRepository;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "waitlist-promotion-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSeatReleased(SeatReleasedEvent event) {
+        schedule(event.getSessionId());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void promoteAfterStartup() {
+        waitlistRepository.findSessionIdsWithWaiters().forEach(this::schedule);
+    }
+
+    public void schedule(Long sessionId) {
+        if (!pendingSessionIds.add(sessionId)) {
+            return;
+        }
+        try {
+            executor.execute(() -> promote(sessionId));
+        } catch (RejectedExecutionException e) {
+            pendingSessionIds.remove(sessionId);
+        }
+    }
+
+    private void promote(Long sessionId) {
+        // Cleared before running, so a release committed during this run schedules another one
+        pendingSessionIds.remove(sessionId);
+        try {
+            Long userId;
+            while ((userId = sessionService.promoteNext(sessionId)) != null) {
+                promotedCount.increment();
+                log.debug("User {} promoted from the waitlist of session {}", userId, sessionId);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Waitlist promotion failed for session {}: {}", sessionId, e.getMessage());
+        }
+    }
+
+    public long getPromotedCount() {
+        return promotedCount.sum();
+    }
+
+    public int getPendingCount() {
+        return pendingSessionIds.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
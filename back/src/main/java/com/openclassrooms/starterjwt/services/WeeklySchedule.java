@@ -0,0 +1,43 @@
+package com.openclassrooms.starterjwt.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A weekly timetable rule: the given days of the week at one time of day, from the start date to the
+ * end date included.
+ */
+@Getter
+@AllArgsConstructor
+public class WeeklySchedule {
+    private final LocalDate startDate;
+
+    private final LocalDate endDate;
+
+    private final Set<DayOfWeek> daysOfWeek;
+
+    private final LocalTime time;
+
+    /**
+     * Dates of the occurrences in chronological order, stopping after {@code limit + 1} so that a
+     * rule spanning decades is rejected without being expanded.
+     */
+    public List<Date> occurrences(ZoneId zone, int limit) {
+        List<Date> dates = new ArrayList<>();
+        for (LocalDate day = startDate; !day.isAfter(endDate) && dates.size() <= limit; day = day.plusDays(1)) {
+            if (daysOfWeek.contains(day.getDayOfWeek())) {
+                dates.add(Date.from(day.atTime(time).atZone(zone).toInstant()));
+            }
+        }
+        return dates;
+    }
+}
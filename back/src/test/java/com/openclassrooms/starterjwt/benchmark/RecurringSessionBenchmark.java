@@ -0,0 +1,114 @@
+package com.openclassrooms.starterjwt.benchmark;
+
+import com.openclassrooms.starterjwt.SpringBootSecurityJwtApplication;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.services.SessionService;
+import com.openclassrooms.starterjwt.services.WeeklySchedule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Création d'un planning hebdomadaire (ms par planning) : une transaction et un INSERT par séance,
+ * comme des POST /api/session successifs, contre SessionService.createRecurring et ses lots JDBC,
+ * sur la base H2 des tests :
+ * mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main RecurringSessionBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecurringSessionBenchmark {
+    // Tous les jours de semaine, soit 5 séances par semaine
+    @Param({"20", "100"})
+    public int weeks;
+
+    private ConfigurableApplicationContext context;
+
+    private SessionService sessionService;
+
+    private SessionRepository sessionRepository;
+
+    private Session template;
+
+    private WeeklySchedule schedule;
+
+    private List<Date> dates;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(SpringBootSecurityJwtApplication.class)
+                .properties("server.port=0",
+                        "spring.jpa.show-sql=false",
+                        "spring.jpa.properties.hibernate.generate_statistics=false",
+                        "logging.level.root=WARN")
+                .run();
+        sessionService = context.getBean(SessionService.class);
+        sessionRepository = context.getBean(SessionRepository.class);
+
+        template = Session.builder().name("Yoga").description("Planning de la saison").capacity(20).build();
+        LocalDate start = LocalDate.of(2024, 9, 2);
+        schedule = new WeeklySchedule(start, start.plusWeeks(weeks).minusDays(1),
+                EnumSet.range(DayOfWeek.MONDAY, DayOfWeek.FRIDAY), LocalTime.of(18, 30));
+        dates = schedule.occurrences(ZoneId.systemDefault(), SessionService.MAX_RECURRING_SESSIONS);
+    }
+
+    @TearDown(Level.Iteration)
+    public void cleanUp() {
+        sessionRepository.deleteAllInBatch();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void singleInserts() {
+        for (Date date : dates) {
+            sessionService.create(Session.builder().name(template.getName()).description(template.getDescription())
+                    .capacity(template.getCapacity()).date(date).build());
+        }
+    }
+
+    @Benchmark
+    public List<Session> batchedRecurring() {
+        return sessionService.createRecurring(template, schedule);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(RecurringSessionBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
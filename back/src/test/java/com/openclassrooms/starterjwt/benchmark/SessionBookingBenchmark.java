@@ -0,0 +1,127 @@
+package com.openclassrooms.starterjwt.benchmark;
+
+import com.openclassrooms.starterjwt.SpringBootSecurityJwtApplication;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.services.SessionBookingExecutor;
+import com.openclassrooms.starterjwt.services.SessionService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Débit des réservations (réserver puis annuler, ops/s) sur quelques sessions très demandées,
+ * chemin synchrone contre exécuteur mono-écrivain, sur la base H2 des tests :
+ * mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main SessionBookingBenchmark"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class SessionBookingBenchmark {
+    private static final int USERS = 64;
+
+    @Param({"1", "8"})
+    public int hotSessions;
+
+    private ConfigurableApplicationContext context;
+
+    private SessionService sessionService;
+
+    private SessionBookingExecutor bookingExecutor;
+
+    private final List<Long> sessionIds = new ArrayList<>();
+
+    private final List<Long> userIds = new ArrayList<>();
+
+    private final AtomicInteger nextBooker = new AtomicInteger();
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(SpringBootSecurityJwtApplication.class)
+                .properties("server.port=0",
+                        "spring.jpa.show-sql=false",
+                        "logging.level.root=WARN",
+                        "oc.app.bookingExecutorEnabled=true")
+                .run();
+        sessionService = context.getBean(SessionService.class);
+        bookingExecutor = context.getBean(SessionBookingExecutor.class);
+
+        for (int i = 0; i < hotSessions; i++) {
+            sessionIds.add(sessionService.create(Session.builder().name("Yoga " + i).date(new Date())
+                    .description("Séance très demandée").build()).getId());
+        }
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        for (int i = 0; i < USERS; i++) {
+            userIds.add(userRepository.save(User.builder().email("bench" + i + "@example.com").firstName("Bench")
+                    .lastName("User" + i).password("password").admin(false).build()).getId());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    // Chaque thread réserve et annule toujours avec son propre utilisateur : aucun doublon entre threads
+    @State(Scope.Thread)
+    public static class Booker {
+        Long sessionId;
+
+        Long userId;
+
+        @Setup(Level.Trial)
+        public void setUp(SessionBookingBenchmark benchmark) {
+            int index = benchmark.nextBooker.getAndIncrement();
+            sessionId = benchmark.sessionIds.get(index % benchmark.sessionIds.size());
+            userId = benchmark.userIds.get(index % USERS);
+        }
+    }
+
+    @Benchmark
+    public void synchronous(Booker booker) {
+        sessionService.participate(booker.sessionId, booker.userId);
+        sessionService.noLongerParticipate(booker.sessionId, booker.userId);
+    }
+
+    @Benchmark
+    public void singleWriterExecutor(Booker booker) {
+        bookingExecutor.participate(booker.sessionId, booker.userId);
+        bookingExecutor.noLongerParticipate(booker.sessionId, booker.userId);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(SessionBookingBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
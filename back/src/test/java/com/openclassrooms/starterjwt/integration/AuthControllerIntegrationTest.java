@@ -1,10 +1,14 @@
 package com.openclassrooms.starterjwt.integration;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.payload.request.LoginRequest;
+import com.openclassrooms.starterjwt.payload.request.RefreshTokenRequest;
 import com.openclassrooms.starterjwt.payload.request.SignupRequest;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -14,6 +18,10 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManagerFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -36,6 +44,9 @@ public class AuthControllerIntegrationTest {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     @Test
     void authenticateUser_shouldReturnJwtResponse_whenValidCredentials() throws Exception {
         // GIVEN : un utilisateur enregistré en base
@@ -60,6 +71,32 @@ public class AuthControllerIntegrationTest {
                 .andExpect(jsonPath("$.token").isNotEmpty());
     }
 
+    @Test
+    void authenticateUser_shouldQueryUsersOnlyOnce() throws Exception {
+        // GIVEN : un utilisateur deja ecrit en base, statistiques remises a zero
+        String email = "test@example.com";
+        String rawPassword = "testPass123";
+        User user = new User(email, "Last", "First", passwordEncoder.encode(rawPassword), true);
+        userRepository.saveAndFlush(user);
+
+        LoginRequest loginRequest = new LoginRequest();
+        loginRequest.setEmail(email);
+        loginRequest.setPassword(rawPassword);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        // WHEN
+        mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(loginRequest)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.admin").value(true));
+
+        // THEN : une seule requete sur USERS pendant le login
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
     @Test
     void authenticateUser_shouldReturnUnauthorized_whenInvalidPassword() throws Exception {
         // GIVEN
@@ -152,4 +189,82 @@ public class AuthControllerIntegrationTest {
                 .andExpect(jsonPath("$.message").value("Error: Email is already taken!"));
     }
 
+    @Test
+    void refreshToken_shouldIssueNewTokens_andRejectReuse() throws Exception {
+        // GIVEN : un utilisateur connecté
+        JsonNode session = login("test@example.com", "testPass123");
+        RefreshTokenRequest refreshRequest = new RefreshTokenRequest();
+        refreshRequest.setRefreshToken(session.get("refreshToken").asText());
+
+        // WHEN + THEN : le refresh token est échangé une seule fois
+        mockMvc.perform(post("/api/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(refreshRequest)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.token").isNotEmpty())
+                .andExpect(jsonPath("$.refreshToken").isNotEmpty())
+                .andExpect(jsonPath("$.username").value("test@example.com"));
+
+        mockMvc.perform(post("/api/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(refreshRequest)))
+                .andExpect(status().isUnauthorized())
+                .andExpect(jsonPath("$.message").value("Error: Invalid refresh token"));
+    }
+
+    @Test
+    void refreshToken_shouldNotBeAcceptedAsAccessToken() throws Exception {
+        // GIVEN
+        JsonNode session = login("test@example.com", "testPass123");
+
+        // WHEN + THEN
+        mockMvc.perform(get("/api/user/" + session.get("id").asLong())
+                        .header("Authorization", "Bearer " + session.get("refreshToken").asText()))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void logout_shouldRevokeAccessAndRefreshTokens() throws Exception {
+        // GIVEN : un utilisateur connecté dont le token donne accès à l'API
+        JsonNode session = login("test@example.com", "testPass123");
+        String accessToken = session.get("token").asText();
+        RefreshTokenRequest logoutRequest = new RefreshTokenRequest();
+        logoutRequest.setRefreshToken(session.get("refreshToken").asText());
+
+        mockMvc.perform(get("/api/user/" + session.get("id").asLong())
+                        .header("Authorization", "Bearer " + accessToken))
+                .andExpect(status().isOk());
+
+        // WHEN
+        mockMvc.perform(post("/api/auth/logout")
+                        .header("Authorization", "Bearer " + accessToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(logoutRequest)))
+                .andExpect(status().isOk());
+
+        // THEN : les deux tokens sont refusés
+        mockMvc.perform(get("/api/user/" + session.get("id").asLong())
+                        .header("Authorization", "Bearer " + accessToken))
+                .andExpect(status().isUnauthorized());
+
+        mockMvc.perform(post("/api/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(logoutRequest)))
+                .andExpect(status().isUnauthorized());
+    }
+
+    private JsonNode login(String email, String rawPassword) throws Exception {
+        userRepository.save(new User(email, "Last", "First", passwordEncoder.encode(rawPassword), false));
+
+        LoginRequest loginRequest = new LoginRequest();
+        loginRequest.setEmail(email);
+        loginRequest.setPassword(rawPassword);
+
+        String body = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(loginRequest)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
 }
@@ -0,0 +1,30 @@
+package com.openclassrooms.starterjwt.integration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "oc.app.jwtAlgorithm=ES256")
+@AutoConfigureMockMvc
+public class JwksControllerIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void jwks_shouldExposePublicSigningKey_withoutAuthentication() throws Exception {
+        // WHEN + THEN : endpoint public, aucune partie privée de la clé n'est exposée
+        mockMvc.perform(get("/api/auth/jwks"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.keys[0].kty").value("EC"))
+                .andExpect(jsonPath("$.keys[0].alg").value("ES256"))
+                .andExpect(jsonPath("$.keys[0].kid").isNotEmpty())
+                .andExpect(jsonPath("$.keys[0].d").doesNotExist());
+    }
+}
@@ -0,0 +1,58 @@
+package com.openclassrooms.starterjwt.integration;
+
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
+import com.openclassrooms.starterjwt.services.SessionBookingExecutor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+public class SessionBookingBackpressureIntegrationTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private SessionBookingExecutor bookingExecutor;
+
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void participate_shouldReturnServiceUnavailableWithRetryAfter_whenStripeQueueIsFull() throws Exception {
+        //GIVEN : la file de la bande de cette session est pleine
+        when(bookingExecutor.isEnabled()).thenReturn(true);
+        when(bookingExecutor.participate(1L, 2L)).thenThrow(new ServiceUnavailableException(3));
+
+        //WHEN - THEN
+        mockMvc.perform(post("/api/session/1/participate/2"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "3"))
+                .andExpect(jsonPath("$.message").value("Error: Server is busy, please retry later"));
+    }
+
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void noLongerParticipate_shouldReturnServiceUnavailableWithRetryAfter_whenStripeQueueIsFull() throws Exception {
+        //GIVEN
+        when(bookingExecutor.isEnabled()).thenReturn(true);
+        doThrow(new ServiceUnavailableException(1)).when(bookingExecutor).noLongerParticipate(1L, 2L);
+
+        //WHEN - THEN
+        mockMvc.perform(delete("/api/session/1/participate/2"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+    }
+}
@@ -1,15 +1,24 @@
 package com.openclassrooms.starterjwt.integration;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.dto.RecurringSessionDto;
 import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionPatchDto;
 import com.openclassrooms.starterjwt.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.SeatHoldRepository;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
 import com.openclassrooms.starterjwt.repository.TeacherRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.repository.WaitlistRepository;
+import com.openclassrooms.starterjwt.services.BookingResult;
+import com.openclassrooms.starterjwt.services.SessionSearchIndex;
 import com.openclassrooms.starterjwt.services.SessionService;
+import com.openclassrooms.starterjwt.services.WeeklySchedule;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -19,10 +28,19 @@ import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -53,6 +71,18 @@ public class SessionControllerIntegrationTest {
     @Autowired
     private SessionRepository sessionRepository;
 
+    @Autowired
+    private WaitlistRepository waitlistRepository;
+
+    @Autowired
+    private SeatHoldRepository seatHoldRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private SessionSearchIndex searchIndex;
+
 
     @Test
     void shouldReturnUnauthorized_whenNoAuth() throws Exception {
@@ -125,6 +155,70 @@ public class SessionControllerIntegrationTest {
                 .andExpect(content().json(objectMapper.writeValueAsString(sessionMapper.toDto(sessionList))));
     }
 
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void findAll_shouldPaginateByDateAndId_whenLimitIsGiven() throws Exception {
+        // GIVEN : trois sessions, dont deux à la même date
+        Date sameDate = new Date(1700000000000L);
+        Session first = sessionService.create(Session.builder().name("Yoga 1").date(new Date(1600000000000L)).description("Séance 1").build());
+        Session second = sessionService.create(Session.builder().name("Yoga 2").date(sameDate).description("Séance 2").build());
+        Session third = sessionService.create(Session.builder().name("Yoga 3").date(sameDate).description("Séance 3").build());
+
+        // WHEN - THEN : première page
+        String body = mockMvc.perform(get("/api/session").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(2))
+                .andExpect(jsonPath("$.items[0].id").value(first.getId()))
+                .andExpect(jsonPath("$.items[1].id").value(second.getId()))
+                .andExpect(jsonPath("$.nextCursor").isNotEmpty())
+                .andReturn().getResponse().getContentAsString();
+
+        String cursor = objectMapper.readTree(body).get("nextCursor").asText();
+
+        // WHEN - THEN : page suivante à partir du curseur
+        mockMvc.perform(get("/api/session").param("limit", "2").param("cursor", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1))
+                .andExpect(jsonPath("$.items[0].id").value(third.getId()))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void findAll_shouldReturnBadRequest_whenCursorIsInvalid() throws Exception {
+        mockMvc.perform(get("/api/session").param("cursor", "invalid"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void findAll_shouldReadParticipantIdsWithoutLoadingUsers() throws Exception {
+        // GIVEN : trois sessions avec deux participants chacune, contexte de persistance vidé
+        User alice = userRepository.save(User.builder().email("alice@example.com").firstName("Alice")
+                .lastName("Martin").password("password").build());
+        User bob = userRepository.save(User.builder().email("bob@example.com").firstName("Bob")
+                .lastName("Durand").password("password").build());
+        for (int i = 0; i < 3; i++) {
+            sessionService.create(Session.builder().name("Yoga " + i).date(new Date())
+                    .description("Séance " + i).users(new ArrayList<>(List.of(alice, bob))).build());
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        // WHEN
+        mockMvc.perform(get("/api/session"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].users", containsInAnyOrder(alice.getId().intValue(), bob.getId().intValue())));
+
+        // THEN : une requête pour les sessions, une pour les ids de participants, aucune sur USERS
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isEqualTo(3);
+    }
+
     @Test
     @WithMockUser(username = "user", roles = {"USER"})
     void findAll_shouldReturnEmptyList_whenNoSessionsExist() throws Exception {
@@ -136,6 +230,107 @@ public class SessionControllerIntegrationTest {
                 .andExpect(content().json("[]"));  // JSON vide
     }
 
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void findAll_shouldFilterByDateRangeAndTeacher() throws Exception {
+        // GIVEN : des séances du professeur en mars et en avril, et une séance sans professeur en mars
+        Teacher teacher = teacherRepository.save(Teacher.builder().firstName("Jean").lastName("Dupont").build());
+        Session first = sessionService.create(Session.builder().name("Yoga 1").date(at(2024, 3, 1, 9))
+                .description("Séance 1").teacher(teacher).build());
+        Session last = sessionService.create(Session.builder().name("Yoga 2").date(at(2024, 3, 10, 20))
+                .description("Séance 2").teacher(teacher).build());
+        sessionService.create(Session.builder().name("Yoga 3").date(at(2024, 3, 10, 18)).description("Séance 3").build());
+        sessionService.create(Session.builder().name("Yoga 4").date(at(2024, 4, 1, 9))
+                .description("Séance 4").teacher(teacher).build());
+
+        // WHEN - THEN : les deux bornes sont incluses, jour entier
+        mockMvc.perform(get("/api/session")
+                        .param("from", "2024-03-01")
+                        .param("to", "2024-03-10")
+                        .param("teacher_id", teacher.getId().toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(first.getId()))
+                .andExpect(jsonPath("$[1].id").value(last.getId()));
+    }
+
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void findAll_shouldPaginateSessionsUserAttends() throws Exception {
+        // GIVEN : Alice participe à trois séances sur quatre
+        User alice = userRepository.save(User.builder().email("alice@example.com").firstName("Alice")
+                .lastName("Martin").password("password").build());
+        List<Session> attended = new ArrayList<>();
+        for (int day = 1; day <= 4; day++) {
+            List<User> users = day == 2 ? new ArrayList<>() : new ArrayList<>(List.of(alice));
+            Session session = sessionService.create(Session.builder().name("Yoga " + day).date(at(2024, 3, day, 9))
+                    .description("Séance " + day).users(users).build());
+            if (day != 2) {
+                attended.add(session);
+            }
+        }
+
+        // WHEN - THEN : première page
+        String body = mockMvc.perform(get("/api/session").param("user_id", alice.getId().toString()).param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(2))
+                .andExpect(jsonPath("$.items[0].id").value(attended.get(0).getId()))
+                .andExpect(jsonPath("$.items[1].id").value(attended.get(1).getId()))
+                .andReturn().getResponse().getContentAsString();
+
+        String cursor = objectMapper.readTree(body).get("nextCursor").asText();
+
+        // WHEN - THEN : le filtre est renvoyé avec le curseur
+        mockMvc.perform(get("/api/session").param("user_id", alice.getId().toString())
+                        .param("limit", "2").param("cursor", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1))
+                .andExpect(jsonPath("$.items[0].id").value(attended.get(2).getId()))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void findAll_shouldReturnBadRequest_whenDateFilterIsInvalid() throws Exception {
+        mockMvc.perform(get("/api/session").param("from", "2024-03-10").param("to", "2024-03-01"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/session").param("from", "mars"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void search_shouldReturnMatchingSessionsBestFirst() throws Exception {
+        // GIVEN : trois séances, indexées directement car la transaction du test n'est jamais validée
+        List<Session> sessions = List.of(
+                sessionService.create(Session.builder().name("Yoga").date(new Date()).description("Postures debout").build()),
+                sessionService.create(Session.builder().name("Stretching").date(new Date()).description("Un peu de yoga en fin de séance").build()),
+                sessionService.create(Session.builder().name("Pilates").date(new Date()).description("Renforcement").build()));
+        sessions.forEach(session -> searchIndex.index(session.getId(), session.getName(), session.getDescription()));
+
+        try {
+            // WHEN - THEN : préfixe, sans tenir compte de la casse
+            mockMvc.perform(get("/api/session/search").param("q", "YOG"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.length()").value(2))
+                    .andExpect(jsonPath("$[0].id").value(sessions.get(0).getId()))
+                    .andExpect(jsonPath("$[1].id").value(sessions.get(1).getId()));
+        } finally {
+            sessions.forEach(session -> searchIndex.remove(session.getId()));
+        }
+    }
+
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void search_shouldReturnBadRequest_whenQueryIsMissing() throws Exception {
+        mockMvc.perform(get("/api/session/search"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private static Date at(int year, int month, int day, int hour) {
+        return Date.from(LocalDateTime.of(year, month, day, hour, 0).atZone(ZoneId.systemDefault()).toInstant());
+    }
+
     @Test
     @WithMockUser(username = "user", roles = {"USER"})
     void create_shouldReturnCreatedSession_whenValidInput() throws Exception {
@@ -172,7 +367,7 @@ public class SessionControllerIntegrationTest {
                 .andExpect(jsonPath("$.name").value("Séance Yoga"))
                 .andExpect(jsonPath("$.description").value("Une session de yoga"))
                 .andExpect(jsonPath("$.teacher_id").value(teacher.getId()))
-                .andExpect(jsonPath("$.users").isArray());
+                .andExpect(jsonPath("$.users[0]").value(user1.getId()));
     }
 
     @Test
@@ -193,6 +388,96 @@ public class SessionControllerIntegrationTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void create_shouldReturnBadRequestWithMessage_whenUserIdsAreUnknown() throws Exception {
+        //GIVEN
+        User user = userRepository.save(User.builder().email("user1@example.com").firstName("Alice")
+                .lastName("Martin").password("password").build());
+        SessionDto dto = new SessionDto();
+        dto.setName("Yoga");
+        dto.setDate(new Date());
+        dto.setDescription("Description valide");
+        dto.setUsers(List.of(user.getId(), 999998L, 999999L));
+
+        //WHEN - THEN : les ids inconnus sont signalés au lieu de devenir des participants null
+        mockMvc.perform(post("/api/session")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(dto)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Error: Unknown user ids: [999998, 999999]"));
+    }
+
+    @Test
+    void toEntity_shouldResolveAllParticipants_withOneIdQuery() {
+        //GIVEN : 40 participants et un professeur
+        Teacher teacher = teacherRepository.save(Teacher.builder().firstName("Jean").lastName("Dupont").build());
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            userIds.add(userRepository.save(User.builder().email("user" + i + "@example.com").firstName("User")
+                    .lastName("N" + i).password("password").build()).getId());
+        }
+        SessionDto dto = new SessionDto();
+        dto.setName("Yoga");
+        dto.setDate(new Date());
+        dto.setDescription("Description valide");
+        dto.setTeacher_id(teacher.getId());
+        dto.setUsers(userIds);
+        entityManager.flush();
+        entityManager.clear();
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        //WHEN
+        Session session = sessionMapper.toEntity(dto);
+
+        //THEN : une requête pour les ids, une pour le professeur, aucun utilisateur chargé
+        assertThat(session.getUsers()).hasSize(40);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isEqualTo(1);
+    }
+
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void createRecurring_shouldCreateWeeklyTimetable() throws Exception {
+        //GIVEN : mardi et jeudi à 12h15 pendant cinq semaines
+        Teacher teacher = teacherRepository.save(Teacher.builder().firstName("Jean").lastName("Dupont").build());
+        RecurringSessionDto dto = new RecurringSessionDto("Yoga du midi", teacher.getId(), "Pause déjeuner", 15,
+                LocalDate.of(2024, 9, 2), LocalDate.of(2024, 10, 6), Set.of(DayOfWeek.TUESDAY, DayOfWeek.THURSDAY),
+                LocalTime.of(12, 15));
+
+        //WHEN - THEN
+        mockMvc.perform(post("/api/session/recurring")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(dto)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(10))
+                .andExpect(jsonPath("$[0].name").value("Yoga du midi"))
+                .andExpect(jsonPath("$[9].teacher_id").value(teacher.getId()))
+                .andExpect(jsonPath("$[9].capacity").value(15));
+    }
+
+    @Test
+    void createRecurring_shouldInsertSessionsInJdbcBatches() {
+        //GIVEN : 30 séances, tous les jours de semaine pendant six semaines
+        Session template = Session.builder().name("Yoga").description("Matinale").build();
+        WeeklySchedule schedule = new WeeklySchedule(LocalDate.of(2024, 9, 2), LocalDate.of(2024, 10, 13),
+                Set.of(DayOfWeek.MONDAY, DayOfWeek.TUESDAY, DayOfWeek.WEDNESDAY, DayOfWeek.THURSDAY, DayOfWeek.FRIDAY),
+                LocalTime.of(7, 0));
+        entityManager.flush();
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        //WHEN
+        List<Session> sessions = sessionService.createRecurring(template, schedule);
+        entityManager.flush();
+
+        //THEN : les ids viennent de la séquence par blocs, les 30 lignes partent dans un seul lot
+        assertThat(sessions).hasSize(30);
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(30);
+        assertThat(statistics.getPrepareStatementCount()).isLessThan(5);
+    }
+
     @Test
     @WithMockUser(username = "user", roles = {"USER"})
     void update_shouldReturnUpdatedSession_whenValidInput() throws Exception {
@@ -236,6 +521,134 @@ public class SessionControllerIntegrationTest {
                 .andExpect(jsonPath("$.description").value("Description modifiée"));
     }
 
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void patch_shouldUpdateChangedFieldsOnly_atConstantCost() throws Exception {
+        //GIVEN : une session très demandée, 40 participants
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            users.add(userRepository.save(User.builder().email("user" + i + "@example.com").firstName("User")
+                    .lastName("N" + i).password("password").build()));
+        }
+        Session session = sessionService.create(Session.builder().name("Yoga").date(new Date())
+                .description("Ancienne description").users(users).build());
+        entityManager.flush();
+        entityManager.clear();
+        Long version = sessionRepository.findById(session.getId()).orElseThrow().getVersion();
+        entityManager.clear();
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        //WHEN
+        mockMvc.perform(patch("/api/session/" + session.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                new SessionPatchDto(null, null, null, "Nouvelle description", null, version))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Yoga"))
+                .andExpect(jsonPath("$.description").value("Nouvelle description"))
+                .andExpect(jsonPath("$.version").value(version + 1));
+
+        //THEN : un UPDATE et une relecture de la session, ni USERS ni PARTICIPATE
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isEqualTo(1);
+        assertThat(statistics.getCollectionLoadCount()).isZero();
+        assertThat(sessionService.findParticipantIds(List.of(session.getId())).get(session.getId())).hasSize(40);
+    }
+
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void patch_shouldReturnBadRequest_whenCapacityIsBelowParticipants() throws Exception {
+        //GIVEN
+        User alice = userRepository.save(User.builder().email("alice@example.com").firstName("Alice")
+                .lastName("Martin").password("password").build());
+        User bob = userRepository.save(User.builder().email("bob@example.com").firstName("Bob")
+                .lastName("Durand").password("password").build());
+        Session session = sessionService.create(Session.builder().name("Yoga").date(new Date())
+                .description("Séance").users(new ArrayList<>(List.of(alice, bob))).build());
+        entityManager.flush();
+
+        //WHEN - THEN
+        mockMvc.perform(patch("/api/session/" + session.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new SessionPatchDto(null, null, null, null, 1, null))))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void patch_shouldReturnBadRequest_whenNameIsBlank() throws Exception {
+        //GIVEN
+        Session session = sessionService.create(Session.builder().name("Yoga").date(new Date())
+                .description("Séance").build());
+        entityManager.flush();
+
+        //WHEN - THEN : comme pour PUT, un nom fait d'espaces est refusé
+        mockMvc.perform(patch("/api/session/" + session.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new SessionPatchDto("   ", null, null, null, null, null))))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void update_shouldListParticipantsWithoutLoadingUsers_whenTheyAreLeftOut() throws Exception {
+        //GIVEN : une session avec participants, un PUT qui ne les renvoie pas
+        Teacher teacher = teacherRepository.save(Teacher.builder().firstName("Jean").lastName("Dupont").build());
+        User alice = userRepository.save(User.builder().email("alice@example.com").firstName("Alice")
+                .lastName("Martin").password("password").build());
+        Session session = sessionService.create(Session.builder().name("Yoga").date(new Date())
+                .description("Séance").users(new ArrayList<>(List.of(alice))).build());
+        entityManager.flush();
+        entityManager.clear();
+        SessionDto dto = new SessionDto();
+        dto.setName("Yoga doux");
+        dto.setDate(new Date());
+        dto.setTeacher_id(teacher.getId());
+        dto.setDescription("Séance");
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        //WHEN
+        mockMvc.perform(put("/api/session/" + session.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(dto)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users[0]").value(alice.getId()));
+
+        //THEN : les participants viennent de la table de jointure
+        assertThat(statistics.getCollectionLoadCount()).isZero();
+    }
+
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void update_shouldReturnConflict_whenVersionIsStale() throws Exception {
+        //GIVEN : une réservation a fait avancer la version depuis la lecture du client
+        User user = userRepository.save(User.builder().email("user1@example.com").firstName("Alice")
+                .lastName("Martin").password("password").build());
+        Session session = sessionService.create(Session.builder().name("Session Initiale").date(new Date())
+                .description("Description initiale").build());
+        entityManager.flush();
+        Long readVersion = session.getVersion();
+        sessionService.participate(session.getId(), user.getId());
+        entityManager.clear();
+
+        SessionDto dto = new SessionDto();
+        dto.setName("Session Modifiée");
+        dto.setDate(new Date());
+        dto.setTeacher_id(1L);
+        dto.setDescription("Description modifiée");
+        dto.setVersion(readVersion);
+
+        //WHEN - THEN : la modification est refusée et la réservation conservée
+        mockMvc.perform(put("/api/session/" + session.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(dto)))
+                .andExpect(status().isConflict());
+        assertThat(sessionService.findParticipantIds(List.of(session.getId())).get(session.getId()))
+                .containsExactly(user.getId());
+    }
+
     @Test
     @WithMockUser(username = "user", roles = {"USER"})
     void update_shouldReturnBadRequest_whenIdNotNumber() throws Exception {
@@ -326,6 +739,229 @@ public class SessionControllerIntegrationTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void participate_shouldIssueSingleInsert_whateverTheSessionSize() throws Exception {
+        //GIVEN : une session qui a déjà des participants
+        User alice = userRepository.save(User.builder().email("alice@example.com").firstName("Alice")
+                .lastName("Martin").password("password").build());
+        User bob = userRepository.save(User.builder().email("bob@example.com").firstName("Bob")
+                .lastName("Durand").password("password").build());
+        User carol = userRepository.save(User.builder().email("carol@example.com").firstName("Carol")
+                .lastName("Petit").password("password").build());
+        Session session = sessionService.create(Session.builder().name("Yoga 1").date(new Date())
+                .description("Séance 1").users(new ArrayList<>(List.of(alice, bob))).build());
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        //WHEN
+        mockMvc.perform(post("/api/session/" + session.getId() + "/participate/" + carol.getId()))
+                .andExpect(status().isOk());
+
+        //THEN : un UPDATE de version et un INSERT, la collection existante n'est ni chargée ni réécrite
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(sessionService.findParticipantIds(List.of(session.getId())).get(session.getId()))
+                .containsExactlyInAnyOrder(alice.getId(), bob.getId(), carol.getId());
+    }
+
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void participate_shouldReturnAccepted_andWaitlistUser_whenSessionIsFull() throws Exception {
+        //GIVEN : une session d'une place déjà prise
+        User alice = userRepository.save(User.builder().email("alice@example.com").firstName("Alice")
+                .lastName("Martin").password("password").build());
+        User bob = userRepository.save(User.builder().email("bob@example.com").firstName("Bob")
+                .lastName("Durand").password("password").build());
+        Session session = sessionService.create(Session.builder().name("Yoga 1").date(new Date())
+                .description("Séance 1").capacity(1).users(new ArrayList<>(List.of(alice))).build());
+        entityManager.flush();
+
+        //WHEN - THEN : pas de place, Bob est mis en liste d'attente
+        mockMvc.perform(post("/api/session/" + session.getId() + "/participate/" + bob.getId()))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.message").value("Session is full: you are on the waitlist"));
+        assertThat(sessionService.findParticipantIds(List.of(session.getId())).get(session.getId()))
+                .containsExactly(alice.getId());
+        assertThat(waitlistRepository.findWaitingUserIds(session.getId())).containsExactly(bob.getId());
+    }
+
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void noLongerParticipate_shouldRemoveUserFromWaitlist() throws Exception {
+        //GIVEN : Bob attend une place dans une session complète
+        User alice = userRepository.save(User.builder().email("alice@example.com").firstName("Alice")
+                .lastName("Martin").password("password").build());
+        User bob = userRepository.save(User.builder().email("bob@example.com").firstName("Bob")
+                .lastName("Durand").password("password").build());
+        Session session = sessionService.create(Session.builder().name("Yoga 1").date(new Date())
+                .description("Séance 1").capacity(1).users(new ArrayList<>(List.of(alice))).build());
+        entityManager.flush();
+        sessionService.participate(session.getId(), bob.getId());
+
+        //WHEN - THEN
+        mockMvc.perform(delete("/api/session/" + session.getId() + "/participate/" + bob.getId()))
+                .andExpect(status().isOk());
+        assertThat(waitlistRepository.findWaitingUserIds(session.getId())).isEmpty();
+    }
+
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void update_shouldTakeNewParticipantsOffWaitlist_soFreedSeatsStayBookable() throws Exception {
+        //GIVEN : Bob attend une place, puis une modification complète l'ajoute aux participants
+        Teacher teacher = teacherRepository.save(Teacher.builder().firstName("Jean").lastName("Dupont").build());
+        User alice = userRepository.save(User.builder().email("alice@example.com").firstName("Alice")
+                .lastName("Martin").password("password").build());
+        User bob = userRepository.save(User.builder().email("bob@example.com").firstName("Bob")
+                .lastName("Durand").password("password").build());
+        User carol = userRepository.save(User.builder().email("carol@example.com").firstName("Carol")
+                .lastName("Petit").password("password").build());
+        Session session = sessionService.create(Session.builder().name("Yoga 1").date(new Date())
+                .description("Séance 1").teacher(teacher).capacity(1).users(new ArrayList<>(List.of(alice))).build());
+        entityManager.flush();
+        sessionService.participate(session.getId(), bob.getId());
+
+        SessionDto dto = new SessionDto();
+        dto.setName("Yoga 1");
+        dto.setDate(new Date());
+        dto.setTeacher_id(teacher.getId());
+        dto.setDescription("Séance 1");
+        dto.setCapacity(2);
+        dto.setUsers(List.of(alice.getId(), bob.getId()));
+
+        mockMvc.perform(put("/api/session/" + session.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(dto)))
+                .andExpect(status().isOk());
+        assertThat(waitlistRepository.findWaitingUserIds(session.getId())).isEmpty();
+
+        //WHEN : Alice libère sa place et la promotion passe
+        sessionService.noLongerParticipate(session.getId(), alice.getId());
+        Long promoted = sessionService.promoteNext(session.getId());
+
+        //THEN : personne n'attendait, la place reste ouverte aux nouvelles réservations
+        assertThat(promoted).isNull();
+        assertThat(sessionService.participate(session.getId(), carol.getId())).isEqualTo(BookingResult.BOOKED);
+        assertThat(sessionService.findParticipantIds(List.of(session.getId())).get(session.getId()))
+                .containsExactlyInAnyOrder(bob.getId(), carol.getId());
+    }
+
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void participateAll_shouldEnrollGroup_andReturnResultPerUser() throws Exception {
+        //GIVEN : deux places, Alice en occupe déjà une
+        User alice = userRepository.save(User.builder().email("alice@example.com").firstName("Alice")
+                .lastName("Martin").password("password").build());
+        User bob = userRepository.save(User.builder().email("bob@example.com").firstName("Bob")
+                .lastName("Durand").password("password").build());
+        User carol = userRepository.save(User.builder().email("carol@example.com").firstName("Carol")
+                .lastName("Petit").password("password").build());
+        Session session = sessionService.create(Session.builder().name("Yoga 1").date(new Date())
+                .description("Séance 1").capacity(2).users(new ArrayList<>(List.of(alice))).build());
+        entityManager.flush();
+
+        //WHEN - THEN
+        mockMvc.perform(post("/api/session/" + session.getId() + "/participate")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(alice.getId(), bob.getId(), carol.getId(), 999999L))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("ALREADY_PARTICIPATING"))
+                .andExpect(jsonPath("$[1].userId").value(bob.getId()))
+                .andExpect(jsonPath("$[1].status").value("BOOKED"))
+                .andExpect(jsonPath("$[2].status").value("NO_SEAT"))
+                .andExpect(jsonPath("$[3].status").value("USER_NOT_FOUND"));
+        assertThat(sessionService.findParticipantIds(List.of(session.getId())).get(session.getId()))
+                .containsExactlyInAnyOrder(alice.getId(), bob.getId());
+    }
+
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void holdSeat_shouldSetSeatAside_untilConfirmed() throws Exception {
+        //GIVEN : une seule place, Alice la réserve temporairement
+        User alice = userRepository.save(User.builder().email("alice@example.com").firstName("Alice")
+                .lastName("Martin").password("password").build());
+        User bob = userRepository.save(User.builder().email("bob@example.com").firstName("Bob")
+                .lastName("Durand").password("password").build());
+        Session session = sessionService.create(Session.builder().name("Yoga 1").date(new Date())
+                .description("Séance 1").capacity(1).build());
+        entityManager.flush();
+
+        mockMvc.perform(post("/api/session/" + session.getId() + "/hold/" + alice.getId()).param("minutes", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.sessionId").value(session.getId()))
+                .andExpect(jsonPath("$.userId").value(alice.getId()))
+                .andExpect(jsonPath("$.expiresAt").exists());
+
+        //WHEN - THEN : la place est prise tant que la réservation tient, puis devient une participation
+        mockMvc.perform(post("/api/session/" + session.getId() + "/hold/" + bob.getId()))
+                .andExpect(status().isConflict());
+        mockMvc.perform(post("/api/session/" + session.getId() + "/hold/" + alice.getId() + "/confirm"))
+                .andExpect(status().isOk());
+        assertThat(sessionService.findParticipantIds(List.of(session.getId())).get(session.getId()))
+                .containsExactly(alice.getId());
+        entityManager.clear();
+        assertThat(sessionRepository.findById(session.getId()).orElseThrow().getParticipantCount()).isEqualTo(1);
+    }
+
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void participate_shouldBookHeldSeat_insteadOfTakingSecondOne() throws Exception {
+        //GIVEN : deux places, Alice en réserve une temporairement
+        User alice = userRepository.save(User.builder().email("alice@example.com").firstName("Alice")
+                .lastName("Martin").password("password").build());
+        Session session = sessionService.create(Session.builder().name("Yoga 1").date(new Date())
+                .description("Séance 1").capacity(2).build());
+        entityManager.flush();
+        sessionService.holdSeat(session.getId(), alice.getId(), 60_000);
+
+        //WHEN
+        mockMvc.perform(post("/api/session/" + session.getId() + "/participate/" + alice.getId()))
+                .andExpect(status().isOk());
+
+        //THEN : une seule place occupée, la réservation temporaire a disparu
+        entityManager.clear();
+        assertThat(sessionRepository.findById(session.getId()).orElseThrow().getParticipantCount()).isEqualTo(1);
+        assertThat(seatHoldRepository.countBySessionId(session.getId())).isZero();
+        assertThat(sessionService.findParticipantIds(List.of(session.getId())).get(session.getId()))
+                .containsExactly(alice.getId());
+    }
+
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void releaseHold_shouldGiveSeatBack() throws Exception {
+        //GIVEN
+        User alice = userRepository.save(User.builder().email("alice@example.com").firstName("Alice")
+                .lastName("Martin").password("password").build());
+        User bob = userRepository.save(User.builder().email("bob@example.com").firstName("Bob")
+                .lastName("Durand").password("password").build());
+        Session session = sessionService.create(Session.builder().name("Yoga 1").date(new Date())
+                .description("Séance 1").capacity(1).build());
+        entityManager.flush();
+        sessionService.holdSeat(session.getId(), alice.getId(), 60_000);
+
+        //WHEN
+        mockMvc.perform(delete("/api/session/" + session.getId() + "/hold/" + alice.getId()))
+                .andExpect(status().isOk());
+
+        //THEN : Bob peut prendre la place rendue
+        mockMvc.perform(post("/api/session/" + session.getId() + "/hold/" + bob.getId()))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void holdSeat_shouldReturnBadRequest_whenDurationIsOutOfRange() throws Exception {
+        Session session = sessionService.create(Session.builder().name("Yoga 1").date(new Date())
+                .description("Séance 1").build());
+
+        mockMvc.perform(post("/api/session/" + session.getId() + "/hold/1").param("minutes", "600"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/session/" + session.getId() + "/hold/1").param("minutes", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     @WithMockUser(username = "user", roles = {"USER"})
     void participate_shouldReturnBadRequest_whenUserAlreadyParticipates() throws Exception {
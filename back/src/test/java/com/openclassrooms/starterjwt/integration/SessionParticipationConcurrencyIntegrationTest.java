@@ -0,0 +1,293 @@
+package com.openclassrooms.starterjwt.integration;
+
+import com.openclassrooms.starterjwt.exception.ConflictException;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.ParticipationRepository;
+import com.openclassrooms.starterjwt.repository.SeatHoldRepository;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.repository.WaitlistRepository;
+import com.openclassrooms.starterjwt.services.BookingResult;
+import com.openclassrooms.starterjwt.services.SessionBookingExecutor;
+import com.openclassrooms.starterjwt.services.SessionService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Pas de @Transactional : chaque réservation doit valider sa propre transaction pour que les threads se concurrencent
+@SpringBootTest
+public class SessionParticipationConcurrencyIntegrationTest {
+    private static final int PARTICIPANTS = 2000;
+
+    private static final int THREADS = 16;
+
+    private static final int UPDATE_EVERY = 50;
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ParticipationRepository participationRepository;
+
+    @Autowired
+    private WaitlistRepository waitlistRepository;
+
+    @Autowired
+    private SeatHoldRepository seatHoldRepository;
+
+    @AfterEach
+    void cleanUp() {
+        seatHoldRepository.deleteAllInBatch();
+        waitlistRepository.deleteAllInBatch();
+        participationRepository.deleteAllInBatch();
+        sessionRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void participate_shouldNotLoseAnyBooking_underConcurrentBookingsAndUpdates() throws Exception {
+        //GIVEN : une session et 2000 utilisateurs
+        Session session = sessionService.create(Session.builder().name("Yoga").date(new Date())
+                .description("Séance très demandée").build());
+        List<User> users = userRepository.saveAll(IntStream.range(0, PARTICIPANTS)
+                .mapToObj(i -> User.builder().email("stress" + i + "@example.com").firstName("Stress")
+                        .lastName("Test" + i).password("password").admin(false).build())
+                .collect(Collectors.toList()));
+
+        //WHEN : toutes les réservations partent en parallèle, entrecoupées de modifications de la session
+        AtomicInteger appliedUpdates = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < users.size(); i++) {
+            Long userId = users.get(i).getId();
+            tasks.add(() -> {
+                sessionService.participate(session.getId(), userId);
+                return null;
+            });
+            if (i % UPDATE_EVERY == 0) {
+                int round = i;
+                tasks.add(() -> {
+                    try {
+                        sessionService.update(session.getId(), Session.builder().name("Yoga " + round)
+                                .date(new Date()).description("Séance très demandée").build());
+                        appliedUpdates.incrementAndGet();
+                    } catch (ConflictException e) {
+                        conflicts.incrementAndGet();
+                    }
+                    return null;
+                });
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+
+        //THEN : toutes les réservations sont présentes, chaque écriture a fait avancer la version une fois
+        List<Long> participantIds = sessionService.findParticipantIds(List.of(session.getId())).get(session.getId());
+        assertThat(participantIds).hasSize(PARTICIPANTS)
+                .containsExactlyInAnyOrderElementsOf(users.stream().map(User::getId).collect(Collectors.toList()));
+        assertThat(sessionRepository.findById(session.getId()).orElseThrow().getVersion())
+                .isEqualTo((long) PARTICIPANTS + appliedUpdates.get());
+        assertThat(appliedUpdates.get() + conflicts.get()).isEqualTo(PARTICIPANTS / UPDATE_EVERY);
+    }
+
+    @Test
+    void participate_shouldNeverOversell_andPromoteWaitlistInOrder() throws Exception {
+        //GIVEN : 50 places pour 500 candidats
+        int capacity = 50;
+        int candidates = 500;
+        int cancellations = 20;
+        Session session = sessionService.create(Session.builder().name("Yoga").date(new Date())
+                .description("Petite salle").capacity(capacity).build());
+        List<User> users = userRepository.saveAll(IntStream.range(0, candidates)
+                .mapToObj(i -> User.builder().email("seat" + i + "@example.com").firstName("Seat")
+                        .lastName("Test" + i).password("password").admin(false).build())
+                .collect(Collectors.toList()));
+
+        //WHEN : tout le monde réserve en même temps
+        AtomicInteger waitlisted = new AtomicInteger();
+        runConcurrently(users.stream().map(user -> (Callable<Void>) () -> {
+            if (sessionService.participate(session.getId(), user.getId()) == BookingResult.WAITLISTED) {
+                waitlisted.incrementAndGet();
+            }
+            return null;
+        }).collect(Collectors.toList()));
+
+        //THEN : exactement la capacité est réservée, les autres attendent
+        assertThat(sessionService.findParticipantIds(List.of(session.getId())).get(session.getId())).hasSize(capacity);
+        assertThat(waitlisted.get()).isEqualTo(candidates - capacity);
+        List<Long> waitingBefore = waitlistRepository.findWaitingUserIds(session.getId());
+        assertThat(waitingBefore).hasSize(candidates - capacity);
+
+        //WHEN : 20 annulations arrivent en même temps
+        List<Long> cancelling = sessionService.findParticipantIds(List.of(session.getId())).get(session.getId())
+                .subList(0, cancellations);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        cancelling.forEach(userId -> tasks.add(() -> {
+            sessionService.noLongerParticipate(session.getId(), userId);
+            return null;
+        }));
+        runConcurrently(tasks);
+        awaitPromotions(session.getId(), capacity);
+
+        //THEN : les premiers de la file ont obtenu les places libérées, dans l'ordre, sans survente
+        List<Long> participants = sessionService.findParticipantIds(List.of(session.getId())).get(session.getId());
+        assertThat(participants).hasSize(capacity).containsAll(waitingBefore.subList(0, cancellations));
+        assertThat(waitlistRepository.findWaitingUserIds(session.getId()))
+                .isEqualTo(waitingBefore.subList(cancellations, waitingBefore.size()));
+        assertThat(sessionRepository.findById(session.getId()).orElseThrow().getParticipantCount()).isEqualTo(capacity);
+    }
+
+    @Test
+    void bookingExecutor_shouldNotLoseAnyBooking_andBatchTheWrites() throws Exception {
+        //GIVEN : 4 sessions de 200 places et 1000 candidats, 250 par session
+        int sessions = 4;
+        int capacity = 200;
+        int candidates = 1000;
+        List<Session> created = new ArrayList<>();
+        for (int i = 0; i < sessions; i++) {
+            created.add(sessionService.create(Session.builder().name("Yoga " + i).date(new Date())
+                    .description("Séance").capacity(capacity).build()));
+        }
+        List<User> users = userRepository.saveAll(IntStream.range(0, candidates)
+                .mapToObj(i -> User.builder().email("batch" + i + "@example.com").firstName("Batch")
+                        .lastName("Test" + i).password("password").admin(false).build())
+                .collect(Collectors.toList()));
+        SessionBookingExecutor bookingExecutor = new SessionBookingExecutor(sessionService, true, 2, 10000, 100, 1);
+        bookingExecutor.start();
+
+        //WHEN
+        AtomicInteger waitlisted = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < candidates; i++) {
+            Long sessionId = created.get(i % sessions).getId();
+            Long userId = users.get(i).getId();
+            tasks.add(() -> {
+                if (bookingExecutor.participate(sessionId, userId) == BookingResult.WAITLISTED) {
+                    waitlisted.incrementAndGet();
+                }
+                return null;
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+            bookingExecutor.shutdown();
+        }
+
+        //THEN : chaque session est pleine, sans survente, et les commandes ont été regroupées
+        for (Session session : created) {
+            assertThat(sessionService.findParticipantIds(List.of(session.getId())).get(session.getId())).hasSize(capacity);
+            assertThat(sessionRepository.findById(session.getId()).orElseThrow().getParticipantCount()).isEqualTo(capacity);
+        }
+        assertThat(waitlisted.get()).isEqualTo(candidates - sessions * capacity);
+        assertThat(bookingExecutor.getCommandCount()).isEqualTo(candidates);
+        assertThat(bookingExecutor.getBatchCount()).isLessThanOrEqualTo(candidates);
+    }
+
+    @Test
+    void holdSeat_shouldNeverOversell_andReleaseExpiredHoldsThroughTheWheel() throws Exception {
+        //GIVEN : 50 places pour 200 candidats qui réservent temporairement pour 2 secondes
+        int capacity = 50;
+        int candidates = 200;
+        Session session = sessionService.create(Session.builder().name("Yoga").date(new Date())
+                .description("Petite salle").capacity(capacity).build());
+        List<User> users = userRepository.saveAll(IntStream.range(0, candidates)
+                .mapToObj(i -> User.builder().email("hold" + i + "@example.com").firstName("Hold")
+                        .lastName("Test" + i).password("password").admin(false).build())
+                .collect(Collectors.toList()));
+
+        //WHEN : tout le monde tente sa chance en même temps
+        AtomicInteger held = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        runConcurrently(users.stream().map(user -> (Callable<Void>) () -> {
+            try {
+                sessionService.holdSeat(session.getId(), user.getId(), 2_000);
+                held.incrementAndGet();
+            } catch (ConflictException e) {
+                refused.incrementAndGet();
+            }
+            return null;
+        }).collect(Collectors.toList()));
+
+        //THEN : exactement la capacité est retenue
+        assertThat(held.get()).isEqualTo(capacity);
+        assertThat(refused.get()).isEqualTo(candidates - capacity);
+        assertThat(sessionRepository.findById(session.getId()).orElseThrow().getParticipantCount()).isEqualTo(capacity);
+
+        //WHEN : personne ne confirme
+        awaitHoldsExpired(session.getId());
+
+        //THEN : la roue a rendu toutes les places
+        assertThat(seatHoldRepository.countBySessionId(session.getId())).isZero();
+        assertThat(sessionRepository.findById(session.getId()).orElseThrow().getParticipantCount()).isZero();
+    }
+
+    private static void runConcurrently(List<Callable<Void>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    // Les expirations tournent en arrière-plan, au tic de la roue qui suit l'échéance
+    private void awaitHoldsExpired(Long sessionId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline
+                && sessionRepository.findById(sessionId).orElseThrow().getParticipantCount() > 0) {
+            Thread.sleep(50);
+        }
+    }
+
+    // Les promotions tournent en arrière-plan après chaque annulation
+    private void awaitPromotions(Long sessionId, int expectedParticipants) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            List<Long> participants = sessionService.findParticipantIds(List.of(sessionId)).get(sessionId);
+            if (participants != null && participants.size() == expectedParticipants) {
+                return;
+            }
+            Thread.sleep(50);
+        }
+    }
+}
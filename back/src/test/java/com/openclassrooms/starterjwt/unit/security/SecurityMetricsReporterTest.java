@@ -0,0 +1,78 @@
+package com.openclassrooms.starterjwt.unit.security;
+
+import com.openclassrooms.starterjwt.security.SecurityMetricsReporter;
+import com.openclassrooms.starterjwt.security.jwt.VerifiedTokenCache;
+import com.openclassrooms.starterjwt.security.password.PasswordHashingExecutor;
+import com.openclassrooms.starterjwt.security.services.UserDetailsCache;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SecurityMetricsReporterTest {
+
+    private final PasswordHashingExecutor hashingExecutor = new PasswordHashingExecutor(1, 1, 5000, 1);
+
+    @AfterEach
+    void tearDown() {
+        hashingExecutor.shutdown();
+    }
+
+    @Test
+    void summary_shouldReportJwtCacheCounters() {
+        //GIVEN : un succès et un échec sur le cache des jetons vérifiés
+        VerifiedTokenCache tokenCache = new VerifiedTokenCache(10);
+        Claims claims = Jwts.claims().setExpiration(new Date(System.currentTimeMillis() + 60000));
+        tokenCache.put("token", claims);
+        tokenCache.get("token");
+        tokenCache.get("unknown");
+        SecurityMetricsReporter reporter = new SecurityMetricsReporter(tokenCache, new UserDetailsCache(10, 60000), hashingExecutor, 0);
+
+        //WHEN
+        String summary = reporter.summary();
+
+        //THEN
+        assertThat(summary).contains("jwt cache size=1 hits=1 misses=1 hitRatio=0.500");
+    }
+
+    @Test
+    void summary_shouldReportUserCacheHitRatio() {
+        //GIVEN : trois succès et un échec sur le cache des utilisateurs
+        UserDetailsCache userCache = new UserDetailsCache(10, 60000);
+        userCache.put(UserDetailsImpl.builder().id(1L).username("user@example.com").build());
+        for (int i = 0; i < 3; i++) {
+            userCache.get("user@example.com");
+        }
+        userCache.get("other@example.com");
+        SecurityMetricsReporter reporter = new SecurityMetricsReporter(new VerifiedTokenCache(10), userCache, hashingExecutor, 0);
+
+        //WHEN
+        String summary = reporter.summary();
+
+        //THEN
+        assertThat(summary).contains("user cache size=1 hits=3 misses=1 hitRatio=0.750");
+    }
+
+    @Test
+    void summary_shouldReportHashLatencyWithQueueDepth() {
+        //GIVEN : un hachage d'au moins 20 ms
+        hashingExecutor.execute(() -> {
+            Thread.sleep(20);
+            return "hash";
+        });
+        SecurityMetricsReporter reporter = new SecurityMetricsReporter(
+                new VerifiedTokenCache(10), new UserDetailsCache(10, 60000), hashingExecutor, 0);
+
+        //WHEN
+        String summary = reporter.summary();
+
+        //THEN
+        assertThat(summary).contains("password hashing queue=0 active=").contains("hashes=1 avgMs=");
+        assertThat(hashingExecutor.getAverageHashMillis()).isGreaterThanOrEqualTo(20.0);
+    }
+}
@@ -0,0 +1,104 @@
+package com.openclassrooms.starterjwt.unit.security.cache;
+
+import com.openclassrooms.starterjwt.security.cache.ExpiringCache;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ExpiringCacheTest {
+
+    @Test
+    void get_shouldReturnValueAndCountHit_whenEntryIsFresh() {
+        //GIVEN
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10);
+        cache.put("token", "user@example.com", System.currentTimeMillis() + 60000);
+
+        //WHEN
+        String value = cache.get("token");
+
+        //THEN
+        assertThat(value).isEqualTo("user@example.com");
+        assertThat(cache.getHitCount()).isEqualTo(1);
+        assertThat(cache.getMissCount()).isZero();
+    }
+
+    @Test
+    void get_shouldCountMiss_whenEntryIsAbsent() {
+        //GIVEN
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10);
+
+        //WHEN
+        String value = cache.get("unknown");
+
+        //THEN
+        assertThat(value).isNull();
+        assertThat(cache.getMissCount()).isEqualTo(1);
+        assertThat(cache.getHitRatio()).isZero();
+    }
+
+    @Test
+    void put_shouldIgnoreEntry_whenAlreadyExpired() {
+        //GIVEN
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10);
+
+        //WHEN : une entrée dont l'expiration est déjà passée
+        cache.put("token", "user@example.com", System.currentTimeMillis() - 1000);
+
+        //THEN
+        assertThat(cache.size()).isZero();
+        assertThat(cache.get("token")).isNull();
+    }
+
+    @Test
+    void get_shouldDropEntry_onceExpired() throws InterruptedException {
+        //GIVEN
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10);
+        cache.put("token", "user@example.com", System.currentTimeMillis() + 20);
+
+        //WHEN
+        Thread.sleep(50);
+
+        //THEN
+        assertThat(cache.get("token")).isNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void put_shouldKeepSizeBounded_whenCapacityIsReached() {
+        //GIVEN
+        ExpiringCache<Integer, Integer> cache = new ExpiringCache<>(100);
+        long expiresAt = System.currentTimeMillis() + 60000;
+
+        //WHEN
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i, i, expiresAt);
+        }
+
+        //THEN
+        assertThat(cache.size()).isLessThanOrEqualTo(100);
+        assertThat(cache.getEvictionCount()).isPositive();
+    }
+
+    @Test
+    void removeIf_shouldEvictMatchingValues() {
+        //GIVEN
+        ExpiringCache<String, Long> cache = new ExpiringCache<>(10);
+        long expiresAt = System.currentTimeMillis() + 60000;
+        cache.put("a", 1L, expiresAt);
+        cache.put("b", 2L, expiresAt);
+
+        //WHEN
+        cache.removeIf(value -> value == 1L);
+
+        //THEN
+        assertThat(cache.get("a")).isNull();
+        assertThat(cache.get("b")).isEqualTo(2L);
+    }
+
+    @Test
+    void constructor_shouldRejectNonPositiveSize() {
+        assertThatThrownBy(() -> new ExpiringCache<String, String>(0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
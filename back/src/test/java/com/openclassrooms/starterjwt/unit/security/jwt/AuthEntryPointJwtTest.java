@@ -2,6 +2,7 @@ package com.openclassrooms.starterjwt.unit.security.jwt;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.openclassrooms.starterjwt.security.jwt.AuthEntryPointJwt;
+import com.openclassrooms.starterjwt.security.jwt.AuthFailureMonitor;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -30,6 +31,9 @@ public class AuthEntryPointJwtTest {
     @Mock
     private AuthenticationException authException;
 
+    @Mock
+    private AuthFailureMonitor authFailureMonitor;
+
     @InjectMocks
     private AuthEntryPointJwt authEntryPointJwt;
 
@@ -76,6 +80,36 @@ public class AuthEntryPointJwtTest {
         assertThat(body).containsEntry("error", "Unauthorized");
         assertThat(body).containsEntry("message", "Invalid token");
         assertThat(body).containsEntry("path", "/api/test");
+        verify(response).setContentLength(responseOutputStream.size());
+        verify(authFailureMonitor).record(AuthFailureMonitor.Reason.UNAUTHORIZED, "Invalid token");
+    }
+
+    @Test
+    void commence_shouldEscapeMessageAndPath() throws Exception {
+        //GIVEN : des valeurs contenant des caractères à échapper en JSON
+        when(request.getServletPath()).thenReturn("/api/\"quoted\"");
+        when(authException.getMessage()).thenReturn("Line\nbreak é");
+
+        ByteArrayOutputStream responseOutputStream = new ByteArrayOutputStream();
+        ServletOutputStream servletOutputStream = new ServletOutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                responseOutputStream.write(b);
+            }
+            @Override public boolean isReady() { return true; }
+            @Override public void setWriteListener(WriteListener listener) {}
+        };
+        when(response.getOutputStream()).thenReturn(servletOutputStream);
+
+        //WHEN
+        authEntryPointJwt.commence(request, response, authException);
+
+        //THEN : le JSON reste valide et restitue les valeurs d'origine
+        @SuppressWarnings("unchecked")
+        java.util.Map<String, Object> body = new ObjectMapper().readValue(responseOutputStream.toString("UTF-8"), java.util.Map.class);
+
+        assertThat(body).containsEntry("message", "Line\nbreak é");
+        assertThat(body).containsEntry("path", "/api/\"quoted\"");
     }
 }
 
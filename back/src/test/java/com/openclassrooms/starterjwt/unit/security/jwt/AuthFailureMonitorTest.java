@@ -0,0 +1,27 @@
+package com.openclassrooms.starterjwt.unit.security.jwt;
+
+import com.openclassrooms.starterjwt.security.jwt.AuthFailureMonitor;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AuthFailureMonitorTest {
+
+    @Test
+    void record_shouldCountFailuresPerReason() {
+        //GIVEN
+        AuthFailureMonitor monitor = new AuthFailureMonitor(60000);
+
+        //WHEN : rafale d'échecs, un seul log par raison sur l'intervalle
+        for (int i = 0; i < 100; i++) {
+            monitor.record(AuthFailureMonitor.Reason.EXPIRED_TOKEN, "expired");
+        }
+        monitor.record(AuthFailureMonitor.Reason.INVALID_SIGNATURE, "bad signature");
+
+        //THEN
+        assertThat(monitor.getCount(AuthFailureMonitor.Reason.EXPIRED_TOKEN)).isEqualTo(100);
+        assertThat(monitor.getCount(AuthFailureMonitor.Reason.INVALID_SIGNATURE)).isEqualTo(1);
+        assertThat(monitor.getCount(AuthFailureMonitor.Reason.UNAUTHORIZED)).isZero();
+        assertThat(monitor.getTotalCount()).isEqualTo(101);
+    }
+}
@@ -3,8 +3,12 @@ package com.openclassrooms.starterjwt.unit.security.jwt;
 
 import com.openclassrooms.starterjwt.security.jwt.AuthTokenFilter;
 import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.jwt.TokenRevocationList;
+import com.openclassrooms.starterjwt.security.jwt.VerifiedTokenCache;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -13,14 +17,18 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.Date;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -52,6 +60,12 @@ public class AuthTokenFilterTest {
     @Mock
     UserDetails userDetails;
 
+    @Mock
+    VerifiedTokenCache tokenCache;
+
+    @Mock
+    TokenRevocationList revocationList;
+
     @InjectMocks
     TestAuthTokenFilter authTokenFilter;
 
@@ -79,7 +93,7 @@ public class AuthTokenFilterTest {
         //GIVEN : le header Authorization est absent (token null)
         String token = "invalid.jwt.token";
         when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
-        when(jwtUtils.validateJwtToken(token)).thenReturn(false);
+        when(jwtUtils.parseJwtToken(token)).thenReturn(null);
 
         //WHEN
         authTokenFilter.doFilterInternal(request, response, filterChain);
@@ -94,7 +108,7 @@ public class AuthTokenFilterTest {
         //GIVEN
         String token = "token";
         when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
-        when(jwtUtils.validateJwtToken(token)).thenThrow(new RuntimeException("Test Exception"));
+        when(jwtUtils.parseJwtToken(token)).thenThrow(new RuntimeException("Test Exception"));
 
         //WHEN
         authTokenFilter.doFilterInternal(request, response, filterChain);
@@ -117,9 +131,10 @@ public class AuthTokenFilterTest {
                 .lastName("totoLast")
                 .build();
 
+        Claims claims = claimsFor(ValidUserName);
+
         when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
-        when(jwtUtils.validateJwtToken(token)).thenReturn(true);
-        when(jwtUtils.getUserNameFromJwtToken(token)).thenReturn(ValidUserName);
+        when(jwtUtils.parseJwtToken(token)).thenReturn(claims);
 
         when(userDetailsService.loadUserByUsername(ValidUserName)).thenReturn(userDetails);
 
@@ -130,9 +145,102 @@ public class AuthTokenFilterTest {
         //THEN
         assertThat(SecurityContextHolder.getContext().getAuthentication()).isNotNull();
         assertThat(SecurityContextHolder.getContext().getAuthentication().getPrincipal()).isEqualTo(userDetails);
+        verify(tokenCache).put(token, claims);
+        verify(filterChain).doFilter(request, response);
+    }
+
+    @Test
+    void doFilterInternal_shouldSkipTokenParsing_whenTokenIsCached() throws ServletException, IOException {
+        //GIVEN : le token a déjà été vérifié et se trouve dans le cache
+        String token = "cached.jwt.token";
+        String validUserName = "user@example.com";
+        UserDetailsImpl userDetails = UserDetailsImpl.builder()
+                .id(1L)
+                .username(validUserName)
+                .build();
+
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
+        when(tokenCache.get(token)).thenReturn(claimsFor(validUserName));
+        when(userDetailsService.loadUserByUsername(validUserName)).thenReturn(userDetails);
+
+        //WHEN
+        authTokenFilter.doFilterInternal(request, response, filterChain);
+
+        //THEN
+        assertThat(SecurityContextHolder.getContext().getAuthentication().getPrincipal()).isEqualTo(userDetails);
+        verify(jwtUtils, never()).parseJwtToken(anyString());
+        verify(filterChain).doFilter(request, response);
+    }
+
+    @Test
+    void doFilterInternal_shouldBuildPrincipalFromClaims_whenStatelessPrincipalIsEnabled() throws ServletException, IOException {
+        //GIVEN : mode sans état, le principal est reconstruit depuis les claims du token
+        ReflectionTestUtils.setField(authTokenFilter, "statelessPrincipal", true);
+        String token = "valid.jwt.token";
+        Claims claims = claimsFor("user@example.com");
+        UserDetailsImpl userDetails = UserDetailsImpl.builder()
+                .id(1L)
+                .username("user@example.com")
+                .admin(true)
+                .build();
+
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
+        when(jwtUtils.parseJwtToken(token)).thenReturn(claims);
+        when(jwtUtils.getUserDetailsFromClaims(claims)).thenReturn(userDetails);
+
+        //WHEN
+        authTokenFilter.doFilterInternal(request, response, filterChain);
+
+        //THEN : aucun accès à la base de données
+        assertThat(SecurityContextHolder.getContext().getAuthentication().getPrincipal()).isEqualTo(userDetails);
+        verify(userDetailsService, never()).loadUserByUsername(anyString());
+        verify(filterChain).doFilter(request, response);
+    }
+
+    @Test
+    void doFilterInternal_shouldNotAuthenticate_whenTokenIsRevoked() throws ServletException, IOException {
+        //GIVEN : le token est valide mais son identifiant a été révoqué
+        String token = "revoked.jwt.token";
+        Claims claims = claimsFor("user@example.com");
+        claims.setId("revoked-id");
+
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
+        when(jwtUtils.parseJwtToken(token)).thenReturn(claims);
+        when(revocationList.isRevoked("revoked-id")).thenReturn(true);
+
+        //WHEN
+        authTokenFilter.doFilterInternal(request, response, filterChain);
+
+        //THEN
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+        verify(userDetailsService, never()).loadUserByUsername(anyString());
         verify(filterChain).doFilter(request, response);
     }
 
+    @Test
+    void doFilterInternal_shouldNotAuthenticate_whenRefreshTokenIsUsedAsAccessToken() throws ServletException, IOException {
+        //GIVEN
+        String token = "refresh.jwt.token";
+        Claims claims = claimsFor("user@example.com");
+
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
+        when(jwtUtils.parseJwtToken(token)).thenReturn(claims);
+        when(jwtUtils.isRefreshToken(claims)).thenReturn(true);
+
+        //WHEN
+        authTokenFilter.doFilterInternal(request, response, filterChain);
+
+        //THEN
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+        verify(filterChain).doFilter(request, response);
+    }
+
+    private Claims claimsFor(String username) {
+        Claims claims = Jwts.claims().setSubject(username);
+        claims.setExpiration(new Date(System.currentTimeMillis() + 60000));
+        return claims;
+    }
+
 
 
 
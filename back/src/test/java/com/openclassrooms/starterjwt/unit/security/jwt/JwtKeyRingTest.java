@@ -0,0 +1,88 @@
+package com.openclassrooms.starterjwt.unit.security.jwt;
+
+import com.openclassrooms.starterjwt.security.jwt.JwtKeyRing;
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyPair;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JwtKeyRingTest {
+
+    @Test
+    void rotate_shouldSignWithNewKey_andKeepPreviousKeyForVerification() {
+        //GIVEN
+        JwtKeyRing keyRing = new JwtKeyRing(60000);
+        String firstKeyId = keyRing.rotate();
+
+        //WHEN
+        String secondKeyId = keyRing.rotate();
+
+        //THEN : la nouvelle clé signe, l'ancienne vérifie encore les tokens en circulation
+        assertThat(keyRing.getSigningKey().getKeyId()).isEqualTo(secondKeyId);
+        assertThat(keyRing.getVerificationKey(firstKeyId)).isNotNull();
+        assertThat(keyRing.getVerificationKey(secondKeyId)).isNotNull();
+        assertThat(keyRing.toJwks()).hasSize(2);
+    }
+
+    @Test
+    void rotate_shouldDropPreviousKey_onceRetentionIsOver() {
+        //GIVEN : rétention nulle, l'ancienne clé expire immédiatement
+        JwtKeyRing keyRing = new JwtKeyRing(0);
+        String firstKeyId = keyRing.rotate();
+
+        //WHEN
+        keyRing.rotate();
+
+        //THEN
+        assertThat(keyRing.getVerificationKey(firstKeyId)).isNull();
+        assertThat(keyRing.toJwks()).hasSize(1);
+    }
+
+    @Test
+    void getVerificationKey_shouldReturnNull_forUnknownKeyId() {
+        JwtKeyRing keyRing = new JwtKeyRing(60000);
+        keyRing.rotate();
+
+        assertThat(keyRing.getVerificationKey("unknown")).isNull();
+        assertThat(keyRing.getVerificationKey(null)).isNull();
+    }
+
+    @Test
+    void toJwks_shouldExposePublicEcCoordinates() {
+        //GIVEN
+        JwtKeyRing keyRing = new JwtKeyRing(60000);
+        String keyId = keyRing.rotate();
+
+        //WHEN
+        List<Map<String, String>> jwks = keyRing.toJwks();
+
+        //THEN
+        Map<String, String> jwk = jwks.get(0);
+        assertThat(jwk).containsEntry("kty", "EC")
+                .containsEntry("crv", "P-256")
+                .containsEntry("alg", "ES256")
+                .containsEntry("kid", keyId)
+                .doesNotContainKey("d");
+        assertThat(Base64.getUrlDecoder().decode(jwk.get("x"))).hasSize(32);
+        assertThat(Base64.getUrlDecoder().decode(jwk.get("y"))).hasSize(32);
+    }
+
+    @Test
+    void decodeKeyPair_shouldReadEncodedKeys() {
+        //GIVEN : une paire de clés au format PKCS#8 / X.509 encodée en base64
+        KeyPair keyPair = JwtKeyRing.generateKeyPair();
+        String privateKey = Base64.getEncoder().encodeToString(keyPair.getPrivate().getEncoded());
+        String publicKey = Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded());
+
+        //WHEN
+        KeyPair decoded = JwtKeyRing.decodeKeyPair(privateKey, publicKey);
+
+        //THEN
+        assertThat(decoded.getPublic()).isEqualTo(keyPair.getPublic());
+        assertThat(decoded.getPrivate()).isEqualTo(keyPair.getPrivate());
+    }
+}
@@ -1,7 +1,10 @@
 package com.openclassrooms.starterjwt.unit.security.jwt;
 
+import com.openclassrooms.starterjwt.security.jwt.AuthFailureMonitor;
+import com.openclassrooms.starterjwt.security.jwt.JwtKeyRing;
 import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import org.junit.jupiter.api.BeforeEach;
@@ -11,11 +14,19 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.core.Authentication;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.util.Base64;
 import java.util.Date;
 
-import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -24,6 +35,9 @@ public class JwtUtilsTest {
     @Mock
     Authentication authentication;
 
+    @Mock
+    AuthFailureMonitor authFailureMonitor;
+
 
     @InjectMocks
     JwtUtils jwtUtils;
@@ -42,6 +56,11 @@ public class JwtUtilsTest {
         Field jwtExpirationField = JwtUtils.class.getDeclaredField("jwtExpirationMs");
         jwtExpirationField.setAccessible(true);
         jwtExpirationField.setInt(jwtUtils, jwtExpirationMs);
+
+        ReflectionTestUtils.setField(jwtUtils, "jwtRefreshExpirationMs", 60000L);
+
+        // @PostConstruct n'est pas appelé hors contexte Spring : on prépare la clé et le parser
+        jwtUtils.init();
     }
 
     @Test
@@ -67,6 +86,102 @@ public class JwtUtilsTest {
     }
 
 
+    @Test
+    void generateRefreshToken_shouldBeDistinguishableFromAccessToken() {
+        //GIVEN
+        UserDetailsImpl userPrincipal = UserDetailsImpl.builder()
+                .id(1L)
+                .username("testUser")
+                .build();
+
+        //WHEN
+        Claims access = jwtUtils.parseJwtToken(jwtUtils.generateJwtToken(userPrincipal));
+        Claims refresh = jwtUtils.parseJwtToken(jwtUtils.generateRefreshToken(userPrincipal));
+
+        //THEN : chaque token porte un identifiant unique, seul le refresh est typé
+        assertThat(jwtUtils.isRefreshToken(access)).isFalse();
+        assertThat(jwtUtils.isRefreshToken(refresh)).isTrue();
+        assertThat(refresh.getSubject()).isEqualTo("testUser");
+        assertThat(access.getId()).isNotBlank();
+        assertThat(refresh.getId()).isNotBlank().isNotEqualTo(access.getId());
+        assertThat(refresh.getExpiration()).isAfter(access.getExpiration());
+    }
+
+    @Test
+    void generateJwtToken_shouldSignWithEs256AndKeyId_whenAsymmetricModeIsEnabled() {
+        //GIVEN : mode ES256 avec une paire de clés générée au démarrage
+        ReflectionTestUtils.setField(jwtUtils, "jwtAlgorithm", "ES256");
+        jwtUtils.init();
+        UserDetailsImpl userPrincipal = UserDetailsImpl.builder().username("testuser").build();
+        when(authentication.getPrincipal()).thenReturn(userPrincipal);
+
+        //WHEN
+        String token = jwtUtils.generateJwtToken(authentication);
+
+        //THEN : l'en-tête porte l'algorithme et le kid publié dans le JWKS
+        String header = new String(Base64.getUrlDecoder().decode(token.split("\\.")[0]), StandardCharsets.UTF_8);
+        assertThat(header).contains("\"alg\":\"ES256\"");
+        assertThat(header).contains(jwtUtils.getPublicJwks().get(0).get("kid"));
+        assertThat(jwtUtils.getUserNameFromJwtToken(token)).isEqualTo("testuser");
+    }
+
+    @Test
+    void rotateSigningKey_shouldKeepValidatingTokensSignedWithPreviousKey() {
+        //GIVEN
+        ReflectionTestUtils.setField(jwtUtils, "jwtAlgorithm", "ES256");
+        jwtUtils.init();
+        UserDetailsImpl userPrincipal = UserDetailsImpl.builder().username("testuser").build();
+        when(authentication.getPrincipal()).thenReturn(userPrincipal);
+        String oldToken = jwtUtils.generateJwtToken(authentication);
+
+        //WHEN
+        jwtUtils.rotateSigningKey();
+        String newToken = jwtUtils.generateJwtToken(authentication);
+
+        //THEN
+        assertThat(jwtUtils.validateJwtToken(oldToken)).isTrue();
+        assertThat(jwtUtils.validateJwtToken(newToken)).isTrue();
+        assertThat(jwtUtils.getPublicJwks()).hasSize(2);
+    }
+
+    @Test
+    void rotateSigningKey_shouldBeRefused_whenKeyPairIsConfigured() {
+        //GIVEN : une paire de clés partagée entre les nœuds, rotation planifiée demandée
+        KeyPair keyPair = JwtKeyRing.generateKeyPair();
+        ReflectionTestUtils.setField(jwtUtils, "jwtAlgorithm", "ES256");
+        ReflectionTestUtils.setField(jwtUtils, "jwtKeyId", "shared");
+        ReflectionTestUtils.setField(jwtUtils, "jwtPrivateKey",
+                Base64.getEncoder().encodeToString(keyPair.getPrivate().getEncoded()));
+        ReflectionTestUtils.setField(jwtUtils, "jwtPublicKey",
+                Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded()));
+        ReflectionTestUtils.setField(jwtUtils, "jwtKeyRotationMs", 1L);
+        jwtUtils.init();
+
+        //WHEN - THEN : une clé locale ne serait pas connue des autres nœuds
+        assertThatThrownBy(() -> jwtUtils.rotateSigningKey()).isInstanceOf(IllegalStateException.class);
+        assertThat(ReflectionTestUtils.getField(jwtUtils, "keyRotationScheduler")).isNull();
+        assertThat(jwtUtils.getPublicJwks()).extracting(jwk -> jwk.get("kid")).containsExactly("shared");
+    }
+
+    @Test
+    void validateJwtToken_shouldRejectHs512Token_whenAsymmetricModeIsEnabled() {
+        //GIVEN : un token HS512 signé avec le secret partagé
+        UserDetailsImpl userPrincipal = UserDetailsImpl.builder().username("testuser").build();
+        when(authentication.getPrincipal()).thenReturn(userPrincipal);
+        String hmacToken = jwtUtils.generateJwtToken(authentication);
+
+        ReflectionTestUtils.setField(jwtUtils, "jwtAlgorithm", "ES256");
+        jwtUtils.init();
+
+        //WHEN - THEN
+        assertThat(jwtUtils.validateJwtToken(hmacToken)).isFalse();
+    }
+
+    @Test
+    void getPublicJwks_shouldBeEmpty_inHs512Mode() {
+        assertThat(jwtUtils.getPublicJwks()).isEmpty();
+    }
+
     @Test
     void getUserNameFromJwtToken_shouldReturnCorrectUsername() {
         // GIVEN : un token généré avec un username connu
@@ -96,6 +211,64 @@ public class JwtUtilsTest {
         assertThat(valid).isTrue();
     }
 
+    @Test
+    void parseJwtToken_shouldReturnClaimsForValidToken() {
+        // GIVEN
+        UserDetailsImpl userPrincipal = UserDetailsImpl.builder().username("testuser").build();
+        when(authentication.getPrincipal()).thenReturn(userPrincipal);
+        String token = jwtUtils.generateJwtToken(authentication);
+
+        // WHEN
+        Claims claims = jwtUtils.parseJwtToken(token);
+
+        // THEN : les claims portent le sujet et l'expiration utilisée par le cache
+        assertThat(claims).isNotNull();
+        assertThat(claims.getSubject()).isEqualTo("testuser");
+        assertThat(claims.getExpiration()).isNotNull();
+    }
+
+    @Test
+    void getUserDetailsFromClaims_shouldRebuildPrincipalFromTokenClaims() {
+        // GIVEN : un token généré pour un utilisateur complet
+        UserDetailsImpl userPrincipal = UserDetailsImpl.builder()
+                .id(42L)
+                .username("testuser")
+                .firstName("Test")
+                .lastName("User")
+                .admin(true)
+                .build();
+        when(authentication.getPrincipal()).thenReturn(userPrincipal);
+        Claims claims = jwtUtils.parseJwtToken(jwtUtils.generateJwtToken(authentication));
+
+        // WHEN
+        UserDetailsImpl userDetails = jwtUtils.getUserDetailsFromClaims(claims);
+
+        // THEN
+        assertThat(userDetails.getId()).isEqualTo(42L);
+        assertThat(userDetails.getUsername()).isEqualTo("testuser");
+        assertThat(userDetails.getFirstName()).isEqualTo("Test");
+        assertThat(userDetails.getLastName()).isEqualTo("User");
+        assertThat(userDetails.getAdmin()).isTrue();
+    }
+
+    @Test
+    void getUserDetailsFromClaims_shouldReturnNull_whenTokenHasNoIdClaim() {
+        // GIVEN : un ancien token ne contenant que le sujet
+        Claims claims = Jwts.claims().setSubject("testuser");
+
+        // WHEN - THEN
+        assertThat(jwtUtils.getUserDetailsFromClaims(claims)).isNull();
+    }
+
+    @Test
+    void parseJwtToken_shouldReturnNullForInvalidToken() {
+        // WHEN
+        Claims claims = jwtUtils.parseJwtToken("this.is.an.invalid.jwt");
+
+        // THEN
+        assertThat(claims).isNull();
+    }
+
     @Test //Fonctionne pour la SignatureException, le MalformedJwtException et le UnsupportedJwtException
     void validateJwtToken_shouldCatchException_andReturnFalse() {
         // GIVEN
@@ -121,8 +294,9 @@ public class JwtUtilsTest {
         // WHEN
         boolean result = jwtUtils.validateJwtToken(expiredToken);
 
-        // THEN
+        // THEN : l'échec est compté sans log systématique
         assertThat(result).isFalse();
+        verify(authFailureMonitor).record(eq(AuthFailureMonitor.Reason.EXPIRED_TOKEN), anyString());
     }
 
     @Test
@@ -0,0 +1,77 @@
+package com.openclassrooms.starterjwt.unit.security.jwt;
+
+import com.openclassrooms.starterjwt.security.jwt.TokenRevocationList;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TokenRevocationListTest {
+
+    private final TokenRevocationList revocationList = new TokenRevocationList(1000);
+
+    @Test
+    void isRevoked_shouldBeFalse_whenNothingWasRevoked() {
+        //WHEN - THEN
+        assertThat(revocationList.isRevoked("token-id")).isFalse();
+        assertThat(revocationList.isRevoked(null)).isFalse();
+    }
+
+    @Test
+    void revoke_shouldMarkTokenAsRevoked_untilItExpires() {
+        //GIVEN
+        long expiresAt = System.currentTimeMillis() + 60000;
+
+        //WHEN
+        boolean first = revocationList.revoke("token-id", expiresAt);
+        boolean second = revocationList.revoke("token-id", expiresAt);
+
+        //THEN : une seule révocation effective, les autres ids ne sont pas touchés
+        assertThat(first).isTrue();
+        assertThat(second).isFalse();
+        assertThat(revocationList.isRevoked("token-id")).isTrue();
+        assertThat(revocationList.isRevoked("other-id")).isFalse();
+        assertThat(revocationList.size()).isEqualTo(1);
+    }
+
+    @Test
+    void revoke_shouldIgnoreAlreadyExpiredTokens() {
+        //WHEN
+        boolean revoked = revocationList.revoke("token-id", System.currentTimeMillis() - 1);
+
+        //THEN
+        assertThat(revoked).isFalse();
+        assertThat(revocationList.isRevoked("token-id")).isFalse();
+        assertThat(revocationList.size()).isZero();
+    }
+
+    @Test
+    void isRevoked_shouldHaveNoFalseNegatives_underLoad() {
+        //GIVEN
+        long expiresAt = System.currentTimeMillis() + 60000;
+        for (int i = 0; i < 1000; i++) {
+            revocationList.revoke("revoked-" + i, expiresAt);
+        }
+
+        //WHEN - THEN : le filtre de Bloom peut se tromper, l'ensemble exact non
+        for (int i = 0; i < 1000; i++) {
+            assertThat(revocationList.isRevoked("revoked-" + i)).isTrue();
+            assertThat(revocationList.isRevoked("valid-" + i)).isFalse();
+        }
+    }
+
+    @Test
+    void purgeExpired_shouldDropExpiredIds_andKeepLiveOnes() throws Exception {
+        //GIVEN : un id qui expire tout de suite, un autre encore valable
+        revocationList.revoke("short-lived", System.currentTimeMillis() + 20);
+        revocationList.revoke("long-lived", System.currentTimeMillis() + 60000);
+        Thread.sleep(50);
+
+        //WHEN : sans nouvelle révocation pour déclencher la purge
+        revocationList.purgeExpired();
+
+        //THEN
+        assertThat(revocationList.size()).isEqualTo(1);
+        assertThat(revocationList.isRevoked("short-lived")).isFalse();
+        assertThat(revocationList.isRevoked("long-lived")).isTrue();
+    }
+}
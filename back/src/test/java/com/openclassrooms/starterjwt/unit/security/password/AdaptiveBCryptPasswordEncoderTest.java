@@ -0,0 +1,63 @@
+package com.openclassrooms.starterjwt.unit.security.password;
+
+import com.openclassrooms.starterjwt.security.password.AdaptiveBCryptPasswordEncoder;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AdaptiveBCryptPasswordEncoderTest {
+
+    @Test
+    void upgradeEncoding_shouldBeFalse_whenCostMatches() {
+        //GIVEN
+        AdaptiveBCryptPasswordEncoder encoder = new AdaptiveBCryptPasswordEncoder(5);
+        String hash = encoder.encode("password");
+
+        //WHEN - THEN
+        assertThat(encoder.upgradeEncoding(hash)).isFalse();
+        assertThat(encoder.matches("password", hash)).isTrue();
+    }
+
+    @Test
+    void upgradeEncoding_shouldBeTrue_onlyWhenCostIsLower() {
+        //GIVEN
+        AdaptiveBCryptPasswordEncoder encoder = new AdaptiveBCryptPasswordEncoder(5);
+        String weaker = new BCryptPasswordEncoder(4).encode("password");
+        String stronger = new BCryptPasswordEncoder(6).encode("password");
+
+        //WHEN - THEN
+        assertThat(encoder.upgradeEncoding(weaker)).isTrue();
+        // Pas de rétrogradation d'un hash plus coûteux
+        assertThat(encoder.upgradeEncoding(stronger)).isFalse();
+        assertThat(encoder.matches("password", weaker)).isTrue();
+        assertThat(encoder.matches("password", stronger)).isTrue();
+    }
+
+    @Test
+    void upgradeEncoding_shouldBeFalse_whenHashIsNotBCrypt() {
+        //GIVEN
+        AdaptiveBCryptPasswordEncoder encoder = new AdaptiveBCryptPasswordEncoder(5);
+
+        //WHEN - THEN
+        assertThat(encoder.upgradeEncoding(null)).isFalse();
+        assertThat(encoder.upgradeEncoding("plain")).isFalse();
+    }
+
+    @Test
+    void calibrate_shouldStayWithinBounds() {
+        //WHEN - THEN : cible impossible à atteindre dans un sens comme dans l'autre
+        assertThat(AdaptiveBCryptPasswordEncoder.calibrate(0, 4, 6)).isEqualTo(4);
+        assertThat(AdaptiveBCryptPasswordEncoder.calibrate(Long.MAX_VALUE / 4, 4, 6)).isEqualTo(6);
+    }
+
+    @Test
+    void calibrated_shouldUseCalibratedStrength() {
+        //WHEN
+        AdaptiveBCryptPasswordEncoder encoder = AdaptiveBCryptPasswordEncoder.calibrated(1, 4, 5);
+
+        //THEN
+        assertThat(encoder.getStrength()).isBetween(4, 5);
+        assertThat(encoder.upgradeEncoding(encoder.encode("password"))).isFalse();
+    }
+}
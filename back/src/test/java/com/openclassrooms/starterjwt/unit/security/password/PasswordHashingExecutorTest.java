@@ -0,0 +1,87 @@
+package com.openclassrooms.starterjwt.unit.security.password;
+
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
+import com.openclassrooms.starterjwt.security.password.PasswordHashingExecutor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PasswordHashingExecutorTest {
+
+    private final ExecutorService callers = Executors.newFixedThreadPool(2);
+
+    private PasswordHashingExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void execute_shouldReturnResult_andRecordHashLatency() {
+        //GIVEN
+        executor = new PasswordHashingExecutor(1, 1, 5000, 1);
+
+        //WHEN
+        String result = executor.execute(() -> "hash");
+
+        //THEN
+        assertThat(result).isEqualTo("hash");
+        assertThat(executor.getHashCount()).isEqualTo(1);
+        assertThat(executor.getMaxHashMillis()).isGreaterThanOrEqualTo(0.0);
+    }
+
+    @Test
+    void execute_shouldRethrowTaskException() {
+        //GIVEN
+        executor = new PasswordHashingExecutor(1, 1, 5000, 1);
+
+        //WHEN - THEN : l'exception métier (ex. BadCredentialsException) remonte telle quelle
+        assertThatThrownBy(() -> executor.execute(() -> {
+            throw new IllegalArgumentException("bad credentials");
+        })).isInstanceOf(IllegalArgumentException.class).hasMessage("bad credentials");
+    }
+
+    @Test
+    void execute_shouldRejectImmediately_whenQueueIsFull() throws Exception {
+        //GIVEN : 1 thread occupé et 1 tâche en file d'attente
+        executor = new PasswordHashingExecutor(1, 1, 5000, 2);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> running = callers.submit(() -> executor.execute(() -> {
+            started.countDown();
+            release.await();
+            return "running";
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        Future<String> queued = callers.submit(() -> executor.execute(() -> "queued"));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (executor.getQueueDepth() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(executor.getQueueDepth()).isEqualTo(1);
+
+        //WHEN - THEN : la 3e demande est refusée sans attendre
+        assertThatThrownBy(() -> executor.execute(() -> "rejected"))
+                .isInstanceOf(ServiceUnavailableException.class)
+                .extracting("retryAfterSeconds").isEqualTo(2);
+        assertThat(executor.getRejectedCount()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(running.get(5, TimeUnit.SECONDS)).isEqualTo("running");
+        assertThat(queued.get(5, TimeUnit.SECONDS)).isEqualTo("queued");
+    }
+}
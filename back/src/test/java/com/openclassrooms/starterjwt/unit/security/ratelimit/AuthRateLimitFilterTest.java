@@ -0,0 +1,154 @@
+package com.openclassrooms.starterjwt.unit.security.ratelimit;
+
+import com.openclassrooms.starterjwt.security.ratelimit.AuthRateLimitFilter;
+import com.openclassrooms.starterjwt.security.ratelimit.AuthRateLimiter;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AuthRateLimitFilterTest {
+
+    @Test
+    void doFilter_shouldRejectWith429_whenEmailBudgetIsExhausted() throws Exception {
+        //GIVEN : 1 tentative par email, IP large
+        AuthRateLimitFilter filter = new AuthRateLimitFilter(new AuthRateLimiter(true, 100, 1000, 1, 60000, 100));
+
+        //WHEN
+        MockHttpServletResponse first = perform(filter, "10.0.0.1", "User@Example.com");
+        MockHttpServletResponse second = perform(filter, "10.0.0.2", "user@example.com ");
+
+        //THEN : l'email est normalisé, la seconde tentative est refusée
+        assertThat(first.getStatus()).isEqualTo(200);
+        assertThat(second.getStatus()).isEqualTo(429);
+        assertThat(second.getHeader("Retry-After")).isEqualTo("60");
+        assertThat(second.getContentAsString()).contains("Too many requests");
+    }
+
+    @Test
+    void doFilter_shouldRejectWith429_whenIpBudgetIsExhausted() throws Exception {
+        //GIVEN
+        AuthRateLimitFilter filter = new AuthRateLimitFilter(new AuthRateLimiter(true, 1, 1000, 100, 1000, 100));
+
+        //WHEN
+        perform(filter, "10.0.0.1", "first@example.com");
+        MockHttpServletResponse response = perform(filter, "10.0.0.1", "second@example.com");
+
+        //THEN
+        assertThat(response.getStatus()).isEqualTo(429);
+        assertThat(response.getHeader("Retry-After")).isEqualTo("1");
+    }
+
+    @Test
+    void doFilter_shouldReplayBodyToNextFilter() throws Exception {
+        //GIVEN
+        AuthRateLimitFilter filter = new AuthRateLimitFilter(new AuthRateLimiter(true, 10, 1000, 10, 1000, 100));
+        MockHttpServletRequest request = loginRequest("10.0.0.1", "user@example.com");
+        MockFilterChain chain = new MockFilterChain();
+
+        //WHEN
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        //THEN : le contrôleur lit toujours le corps complet
+        String body = StreamUtils.copyToString(chain.getRequest().getInputStream(), StandardCharsets.UTF_8);
+        assertThat(body).isEqualTo(new String(request.getContentAsByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void doFilter_shouldServeCachedBodyToReadListener() throws Exception {
+        //GIVEN
+        AuthRateLimitFilter filter = new AuthRateLimitFilter(new AuthRateLimiter(true, 10, 1000, 10, 1000, 100));
+        MockHttpServletRequest request = loginRequest("10.0.0.1", "user@example.com");
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+        ServletInputStream input = chain.getRequest().getInputStream();
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        AtomicBoolean allDataRead = new AtomicBoolean();
+
+        //WHEN : lecture non bloquante comme en servlet asynchrone
+        input.setReadListener(new ReadListener() {
+            @Override
+            public void onDataAvailable() throws IOException {
+                byte[] buffer = new byte[16];
+                while (input.isReady() && !input.isFinished()) {
+                    read.write(buffer, 0, input.read(buffer));
+                }
+            }
+
+            @Override
+            public void onAllDataRead() {
+                allDataRead.set(true);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                throw new AssertionError(t);
+            }
+        });
+
+        //THEN
+        assertThat(allDataRead).isTrue();
+        assertThat(read.toByteArray()).isEqualTo(request.getContentAsByteArray());
+    }
+
+    @Test
+    void doFilter_shouldRejectWith413_whenBodyIsTooLarge() throws Exception {
+        //GIVEN : un corps de 16 Ko
+        AuthRateLimitFilter filter = new AuthRateLimitFilter(new AuthRateLimiter(true, 10, 1000, 10, 1000, 100));
+        MockHttpServletRequest request = loginRequest("10.0.0.1", "user@example.com");
+        request.setContent(new byte[16 * 1024]);
+        MockFilterChain chain = new MockFilterChain();
+
+        //WHEN
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+
+        //THEN : la requête n'atteint pas le contrôleur
+        assertThat(response.getStatus()).isEqualTo(413);
+        assertThat(response.getContentAsString()).contains("too large");
+        assertThat(chain.getRequest()).isNull();
+    }
+
+    @Test
+    void doFilter_shouldIgnoreOtherEndpoints() throws Exception {
+        //GIVEN
+        AuthRateLimitFilter filter = new AuthRateLimitFilter(new AuthRateLimiter(true, 1, 60000, 1, 60000, 100));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/session");
+        request.setServletPath("/api/session");
+
+        //WHEN
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+        MockFilterChain secondChain = new MockFilterChain();
+        filter.doFilter(request, new MockHttpServletResponse(), secondChain);
+
+        //THEN
+        assertThat(chain.getRequest()).isSameAs(request);
+        assertThat(secondChain.getRequest()).isSameAs(request);
+    }
+
+    private MockHttpServletResponse perform(AuthRateLimitFilter filter, String ip, String email) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(loginRequest(ip, email), response, new MockFilterChain());
+        return response;
+    }
+
+    private MockHttpServletRequest loginRequest(String ip, String email) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/auth/login");
+        request.setServletPath("/api/auth/login");
+        request.setRemoteAddr(ip);
+        request.setContentType("application/json");
+        request.setContent(("{\"password\":\"secret\",\"email\":\"" + email + "\"}").getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+}
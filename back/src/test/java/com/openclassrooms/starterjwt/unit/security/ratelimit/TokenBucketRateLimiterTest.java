@@ -0,0 +1,91 @@
+package com.openclassrooms.starterjwt.unit.security.ratelimit;
+
+import com.openclassrooms.starterjwt.security.ratelimit.TokenBucketRateLimiter;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TokenBucketRateLimiterTest {
+
+    @Test
+    void tryAcquire_shouldAllowBurst_thenReturnWaitTime() {
+        //GIVEN : 3 jetons, un nouveau jeton par minute
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(3, 60000, 100);
+
+        //WHEN - THEN
+        assertThat(limiter.tryAcquire("key")).isZero();
+        assertThat(limiter.tryAcquire("key")).isZero();
+        assertThat(limiter.tryAcquire("key")).isZero();
+        assertThat(limiter.tryAcquire("key")).isBetween(1L, 60000L);
+        assertThat(limiter.getRejectedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void tryAcquire_shouldKeepSeparateBucketsPerKey() {
+        //GIVEN
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 60000, 100);
+
+        //WHEN - THEN
+        assertThat(limiter.tryAcquire("first")).isZero();
+        assertThat(limiter.tryAcquire("second")).isZero();
+        assertThat(limiter.tryAcquire("first")).isPositive();
+        assertThat(limiter.size()).isEqualTo(2);
+    }
+
+    @Test
+    void tryAcquire_shouldRefillOverTime() throws InterruptedException {
+        //GIVEN
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 20, 100);
+        assertThat(limiter.tryAcquire("key")).isZero();
+
+        //WHEN
+        Thread.sleep(40);
+
+        //THEN
+        assertThat(limiter.tryAcquire("key")).isZero();
+    }
+
+    @Test
+    void tryAcquire_shouldThrottleNewKeysTogether_whenFull() {
+        //GIVEN : la table est pleine
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(2, 60000, 2);
+        limiter.tryAcquire("first");
+        limiter.tryAcquire("second");
+
+        //WHEN - THEN : les nouvelles clés partagent un seau commun, les clés actives sont conservées
+        assertThat(limiter.tryAcquire("third")).isZero();
+        assertThat(limiter.tryAcquire("fourth")).isZero();
+        assertThat(limiter.tryAcquire("fifth")).isPositive();
+        assertThat(limiter.tryAcquire("third")).isPositive();
+        assertThat(limiter.tryAcquire("first")).isZero();
+        assertThat(limiter.size()).isEqualTo(2);
+        assertThat(limiter.getOverflowedCount()).isEqualTo(4);
+    }
+
+    @Test
+    void tryAcquire_shouldNeverGrantMoreThanBurst_underContention() throws InterruptedException {
+        //GIVEN
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(50, 60000, 100);
+        AtomicInteger granted = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+
+        //WHEN
+        for (int i = 0; i < 1000; i++) {
+            pool.execute(() -> {
+                if (limiter.tryAcquire("key") == 0) {
+                    granted.incrementAndGet();
+                }
+            });
+        }
+        pool.shutdown();
+        assertThat(pool.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        //THEN
+        assertThat(granted.get()).isEqualTo(50);
+    }
+}
@@ -0,0 +1,100 @@
+package com.openclassrooms.starterjwt.unit.security.services;
+
+import com.openclassrooms.starterjwt.security.services.UserDetailsCache;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UserDetailsCacheTest {
+
+    private UserDetailsImpl user(Long id, String email) {
+        return UserDetailsImpl.builder()
+                .id(id)
+                .username(email)
+                .password("password")
+                .build();
+    }
+
+    @Test
+    void get_shouldReturnCachedUser_andTrackHitRatio() {
+        //GIVEN
+        UserDetailsCache cache = new UserDetailsCache(100, 60000);
+        UserDetailsImpl user = user(1L, "user@example.com");
+        cache.put(user);
+
+        //WHEN
+        UserDetailsImpl hit = cache.get("user@example.com");
+        UserDetailsImpl miss = cache.get("other@example.com");
+
+        //THEN
+        assertThat(hit).isEqualTo(user);
+        assertThat(miss).isNull();
+        assertThat(cache.getHitRatio()).isEqualTo(0.5);
+    }
+
+    @Test
+    void evictById_shouldRemoveDeletedAccount() {
+        //GIVEN
+        UserDetailsCache cache = new UserDetailsCache(100, 60000);
+        cache.put(user(1L, "deleted@example.com"));
+        cache.put(user(2L, "kept@example.com"));
+
+        //WHEN : le compte 1 est supprimé
+        cache.evictById(1L);
+
+        //THEN
+        assertThat(cache.get("deleted@example.com")).isNull();
+        assertThat(cache.get("kept@example.com")).isNotNull();
+    }
+
+    @Test
+    void put_shouldNotCache_whenEvictionHappenedDuringLoad() {
+        //GIVEN : une connexion lit le compte, qui est supprimé avant qu'elle le mette en cache
+        UserDetailsCache cache = new UserDetailsCache(100, 60000);
+        long stamp = cache.stamp();
+        cache.evictById(1L);
+
+        //WHEN
+        cache.put(user(1L, "deleted@example.com"), stamp);
+
+        //THEN
+        assertThat(cache.get("deleted@example.com")).isNull();
+    }
+
+    @Test
+    void evictById_shouldWaitForTransactionToComplete() {
+        //GIVEN
+        UserDetailsCache cache = new UserDetailsCache(100, 60000);
+        cache.put(user(1L, "deleted@example.com"));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            //WHEN : suppression dans une transaction pas encore validée
+            cache.evictById(1L);
+
+            //THEN
+            assertThat(cache.get("deleted@example.com")).isNotNull();
+            long stamp = cache.stamp();
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+            assertThat(cache.get("deleted@example.com")).isNull();
+            assertThat(cache.stamp()).isGreaterThan(stamp);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void put_shouldNotCache_whenTtlIsZero() {
+        //GIVEN : un TTL nul désactive le cache
+        UserDetailsCache cache = new UserDetailsCache(100, 0);
+
+        //WHEN
+        cache.put(user(1L, "user@example.com"));
+
+        //THEN
+        assertThat(cache.size()).isZero();
+    }
+}
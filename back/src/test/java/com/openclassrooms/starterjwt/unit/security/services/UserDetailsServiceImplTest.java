@@ -2,6 +2,7 @@ package com.openclassrooms.starterjwt.unit.security.services;
 
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.services.UserDetailsCache;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
 import org.junit.jupiter.api.Test;
@@ -12,10 +13,16 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -24,6 +31,9 @@ public class UserDetailsServiceImplTest {
     @Mock
     UserRepository userRepository;
 
+    @Mock
+    UserDetailsCache userDetailsCache;
+
     @InjectMocks
     UserDetailsServiceImpl userDetailsService;
 
@@ -37,6 +47,7 @@ public class UserDetailsServiceImplTest {
         user.setLastName("Last");
         user.setFirstName("First");
         user.setPassword("password");
+        user.setAdmin(true);
 
         when(userRepository.findByEmail(username)).thenReturn(Optional.of(user));
 
@@ -49,7 +60,29 @@ public class UserDetailsServiceImplTest {
         assertThat(((UserDetailsImpl) userDetails).getId()).isEqualTo(1L);
         assertThat(((UserDetailsImpl) userDetails).getFirstName()).isEqualTo("First");
         assertThat(((UserDetailsImpl) userDetails).getLastName()).isEqualTo("Last");
+        assertThat(((UserDetailsImpl) userDetails).getAdmin()).isTrue();
         assertThat(userDetails.getPassword()).isEqualTo("password");
+        verify(userDetailsCache).put((UserDetailsImpl) userDetails, 0L);
+    }
+
+    @Test
+    void loadUserByUsername_shouldNotQueryDatabase_whenUserIsCached() {
+        //GIVEN
+        String username = "exemple@username.com";
+        UserDetailsImpl cached = UserDetailsImpl.builder()
+                .id(1L)
+                .username(username)
+                .password("password")
+                .build();
+
+        when(userDetailsCache.get(username)).thenReturn(cached);
+
+        //WHEN
+        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+
+        //THEN
+        assertThat(userDetails).isEqualTo(cached);
+        verify(userRepository, never()).findByEmail(anyString());
     }
 
     @Test
@@ -64,4 +97,28 @@ public class UserDetailsServiceImplTest {
                 .isInstanceOf(UsernameNotFoundException.class)
                 .hasMessageContaining("User Not Found with email: " + username);
     }
+
+    @Test
+    void updatePassword_shouldPersistNewHash_andEvictCachedUser() {
+        //GIVEN
+        String username = "exemple@username.com";
+        UserDetailsImpl current = UserDetailsImpl.builder()
+                .id(1L)
+                .username(username)
+                .firstName("First")
+                .lastName("Last")
+                .admin(false)
+                .password("old-hash")
+                .build();
+
+        //WHEN
+        UserDetails updated = userDetailsService.updatePassword(current, "new-hash");
+
+        //THEN
+        verify(userRepository).updatePassword(eq(username), eq("new-hash"), any(LocalDateTime.class));
+        verify(userDetailsCache).evict(username);
+        assertThat(updated.getPassword()).isEqualTo("new-hash");
+        assertThat(((UserDetailsImpl) updated).getId()).isEqualTo(1L);
+        assertThat(((UserDetailsImpl) updated).getAdmin()).isFalse();
+    }
 }
@@ -0,0 +1,89 @@
+package com.openclassrooms.starterjwt.unit.services;
+
+import com.openclassrooms.starterjwt.services.HashedTimingWheel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HashedTimingWheelTest {
+    private HashedTimingWheel<Long> wheel;
+
+    @AfterEach
+    void tearDown() {
+        wheel.stop();
+    }
+
+    @Test
+    void schedule_shouldExpireValuesInDeadlineOrder_andNeverEarly() throws Exception {
+        //GIVEN : roue de 8 cases de 10 ms, les échéances lointaines font plusieurs tours
+        List<Long> expired = Collections.synchronizedList(new ArrayList<>());
+        List<Long> lateness = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(3);
+        long now = System.currentTimeMillis();
+        long[] deadlines = {now + 250, now + 30, now + 120};
+        wheel = new HashedTimingWheel<>(10, 8, index -> {
+            lateness.add(System.currentTimeMillis() - deadlines[index.intValue()]);
+            expired.add(index);
+            done.countDown();
+        }, "test-wheel");
+        wheel.start();
+
+        //WHEN
+        for (long i = 0; i < deadlines.length; i++) {
+            wheel.schedule(i, deadlines[(int) i]);
+        }
+
+        //THEN
+        assertThat(done.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(expired).containsExactly(1L, 2L, 0L);
+        assertThat(lateness).allMatch(ms -> ms >= 0);
+        assertThat(wheel.getPendingCount()).isZero();
+        assertThat(wheel.getExpiredCount()).isEqualTo(3);
+    }
+
+    @Test
+    void cancel_shouldPreventExpiry() throws Exception {
+        //GIVEN
+        List<Long> expired = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(1);
+        wheel = new HashedTimingWheel<>(10, 8, value -> {
+            expired.add(value);
+            done.countDown();
+        }, "test-wheel");
+        wheel.start();
+        long now = System.currentTimeMillis();
+        HashedTimingWheel.Timeout<Long> cancelled = wheel.schedule(1L, now + 50);
+        wheel.schedule(2L, now + 100);
+
+        //WHEN
+        boolean result = cancelled.cancel();
+
+        //THEN : seule la valeur non annulée expire
+        assertThat(result).isTrue();
+        assertThat(done.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(expired).containsExactly(2L);
+        assertThat(cancelled.cancel()).isFalse();
+    }
+
+    @Test
+    void schedule_shouldExpireOnNextTick_whenDeadlineHasPassed() throws Exception {
+        //GIVEN : échéance déjà dépassée, comme une réservation relue au redémarrage
+        CountDownLatch done = new CountDownLatch(1);
+        wheel = new HashedTimingWheel<>(10, 8, value -> done.countDown(), "test-wheel");
+        wheel.start();
+
+        //WHEN
+        HashedTimingWheel.Timeout<Long> timeout = wheel.schedule(1L, System.currentTimeMillis() - 60_000);
+
+        //THEN
+        assertThat(done.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(timeout.isExpired()).isTrue();
+    }
+}
@@ -0,0 +1,124 @@
+package com.openclassrooms.starterjwt.unit.services;
+
+import com.openclassrooms.starterjwt.models.SeatHold;
+import com.openclassrooms.starterjwt.repository.SeatHoldRepository;
+import com.openclassrooms.starterjwt.services.SeatHeldEvent;
+import com.openclassrooms.starterjwt.services.SeatHoldEndedEvent;
+import com.openclassrooms.starterjwt.services.SeatHoldExpirer;
+import com.openclassrooms.starterjwt.services.SessionService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class SeatHoldExpirerTest {
+    @Mock
+    private SessionService sessionService;
+
+    @Mock
+    private SeatHoldRepository seatHoldRepository;
+
+    private SeatHoldExpirer expirer;
+
+    @AfterEach
+    void tearDown() {
+        expirer.shutdown();
+    }
+
+    @Test
+    void onSeatHeld_shouldExpireHoldAtItsDeadline() {
+        //GIVEN
+        expirer = new SeatHoldExpirer(sessionService, seatHoldRepository, 10, 64);
+        expirer.start();
+        when(sessionService.expireHold(10L)).thenReturn(true);
+
+        //WHEN
+        expirer.onSeatHeld(new SeatHeldEvent(10L, new Date(System.currentTimeMillis() + 50)));
+
+        //THEN
+        verify(sessionService, timeout(1000)).expireHold(10L);
+        assertThat(expirer.getPendingCount()).isZero();
+    }
+
+    @Test
+    void onSeatHoldEnded_shouldCancelExpiry() {
+        //GIVEN
+        expirer = new SeatHoldExpirer(sessionService, seatHoldRepository, 10, 64);
+        expirer.start();
+        expirer.onSeatHeld(new SeatHeldEvent(10L, new Date(System.currentTimeMillis() + 50)));
+
+        //WHEN : la réservation temporaire est confirmée avant son échéance
+        expirer.onSeatHoldEnded(new SeatHoldEndedEvent(10L));
+
+        //THEN
+        verify(sessionService, after(200).never()).expireHold(any());
+        assertThat(expirer.getPendingCount()).isZero();
+    }
+
+    @Test
+    void expire_shouldRescheduleAtStoredDeadline_whenDatabaseClockIsBehind() {
+        //GIVEN : l'horloge de la base n'a pas encore atteint expires_at au premier passage
+        expirer = new SeatHoldExpirer(sessionService, seatHoldRepository, 10, 64);
+        expirer.start();
+        long now = System.currentTimeMillis();
+        when(sessionService.expireHold(10L)).thenReturn(false, true);
+        when(seatHoldRepository.findById(10L)).thenReturn(Optional.of(new SeatHold(10L, 5L, 7L, new Date(now + 100))));
+
+        //WHEN
+        expirer.onSeatHeld(new SeatHeldEvent(10L, new Date(now + 20)));
+
+        //THEN : la réservation reste dans la roue et expire au second passage
+        verify(sessionService, timeout(1000).times(2)).expireHold(10L);
+        assertThat(expirer.getReleasedCount()).isEqualTo(1);
+        assertThat(expirer.getPendingCount()).isZero();
+    }
+
+    @Test
+    void expire_shouldForgetHold_whenItIsNoLongerPersisted() {
+        //GIVEN : la réservation a été confirmée entre-temps
+        expirer = new SeatHoldExpirer(sessionService, seatHoldRepository, 10, 64);
+        expirer.start();
+        when(sessionService.expireHold(10L)).thenReturn(false);
+        when(seatHoldRepository.findById(10L)).thenReturn(Optional.empty());
+
+        //WHEN
+        expirer.onSeatHeld(new SeatHeldEvent(10L, new Date(System.currentTimeMillis() + 20)));
+
+        //THEN
+        verify(seatHoldRepository, timeout(1000)).findById(10L);
+        verify(sessionService, after(200).times(1)).expireHold(10L);
+        assertThat(expirer.getPendingCount()).isZero();
+    }
+
+    @Test
+    void rebuildAfterStartup_shouldScheduleEveryPersistedHold() {
+        //GIVEN : une réservation expirée pendant l'arrêt, une autre encore valable
+        expirer = new SeatHoldExpirer(sessionService, seatHoldRepository, 10, 64);
+        expirer.start();
+        long now = System.currentTimeMillis();
+        when(seatHoldRepository.findAll()).thenReturn(List.of(
+                new SeatHold(1L, 5L, 7L, new Date(now - 60_000)),
+                new SeatHold(2L, 5L, 8L, new Date(now + 100))));
+        when(sessionService.expireHold(any())).thenReturn(true);
+
+        //WHEN
+        expirer.rebuildAfterStartup();
+
+        //THEN
+        verify(sessionService, timeout(1000)).expireHold(1L);
+        verify(sessionService, timeout(1000)).expireHold(2L);
+    }
+}
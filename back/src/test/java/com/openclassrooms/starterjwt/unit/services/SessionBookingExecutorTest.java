@@ -0,0 +1,141 @@
+package com.openclassrooms.starterjwt.unit.services;
+
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
+import com.openclassrooms.starterjwt.services.BookingCommand;
+import com.openclassrooms.starterjwt.services.BookingResult;
+import com.openclassrooms.starterjwt.services.SessionBookingExecutor;
+import com.openclassrooms.starterjwt.services.SessionService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class SessionBookingExecutorTest {
+    @Mock
+    private SessionService sessionService;
+
+    private SessionBookingExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void participate_shouldApplyCommandThroughBatch() {
+        //GIVEN
+        executor = new SessionBookingExecutor(sessionService, true, 2, 10, 10, 1);
+        executor.start();
+
+        //WHEN
+        BookingResult result = executor.participate(1L, 2L);
+
+        //THEN
+        assertThat(result).isEqualTo(BookingResult.BOOKED);
+        assertThat(executor.getCommandCount()).isEqualTo(1);
+        verify(sessionService).applyBookings(anyList());
+    }
+
+    @Test
+    void participate_shouldRethrowCommandOutcome() {
+        //GIVEN : le lot passe mais cette réservation est refusée
+        executor = new SessionBookingExecutor(sessionService, true, 1, 10, 10, 1);
+        executor.start();
+        doAnswer(invocation -> {
+            List<BookingCommand> batch = invocation.getArgument(0);
+            batch.get(0).fail(new BadRequestException());
+            return null;
+        }).when(sessionService).applyBookings(anyList());
+
+        //WHEN - THEN
+        assertThrows(BadRequestException.class, () -> executor.participate(1L, 2L));
+    }
+
+    @Test
+    void participate_shouldReplayAlone_whenBatchRollsBack() {
+        //GIVEN : une écriture concurrente hors exécuteur fait échouer le lot entier
+        executor = new SessionBookingExecutor(sessionService, true, 1, 10, 10, 1);
+        executor.start();
+        doThrow(new ObjectOptimisticLockingFailureException("Session", 1L))
+                .when(sessionService).applyBookings(anyList());
+
+        //WHEN
+        executor.noLongerParticipate(1L, 2L);
+
+        //THEN
+        verify(sessionService).noLongerParticipate(1L, 2L);
+        assertThat(executor.getReplayedBatchCount()).isEqualTo(1);
+    }
+
+    @Test
+    void submit_shouldThrowServiceUnavailable_whenStripeQueueIsFull() {
+        //GIVEN : exécuteur non démarré, file d'une seule commande
+        executor = new SessionBookingExecutor(sessionService, true, 1, 1, 10, 1);
+        executor.submit(new BookingCommand(BookingCommand.Type.PARTICIPATE, 1L, 1L));
+
+        //WHEN - THEN
+        assertThrows(ServiceUnavailableException.class,
+                () -> executor.submit(new BookingCommand(BookingCommand.Type.PARTICIPATE, 1L, 2L)));
+        assertThat(executor.getQueueDepth()).isEqualTo(1);
+    }
+
+    @Test
+    void submit_shouldKeepCommandsOfOneSessionInOrder() throws Exception {
+        //GIVEN : les commandes d'une même session arrivent sur une seule bande
+        executor = new SessionBookingExecutor(sessionService, true, 4, 100, 100, 1);
+        List<Long> applied = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> {
+            List<BookingCommand> batch = invocation.getArgument(0);
+            batch.forEach(command -> applied.add(command.getUserId()));
+            return null;
+        }).when(sessionService).applyBookings(anyList());
+
+        List<BookingCommand> commands = new ArrayList<>();
+        for (long userId = 0; userId < 50; userId++) {
+            commands.add(executor.submit(new BookingCommand(BookingCommand.Type.PARTICIPATE, 7L, userId)));
+        }
+
+        //WHEN
+        executor.start();
+        for (BookingCommand command : commands) {
+            command.getResult().get();
+        }
+
+        //THEN
+        assertThat(applied).isSorted().hasSize(50);
+    }
+
+    @Test
+    void participate_shouldRunDeferredCommandAlone_toJoinWaitlist() {
+        //GIVEN : le lot ne trouve pas de place, la commande passe par le chemin synchrone
+        executor = new SessionBookingExecutor(sessionService, true, 1, 10, 10, 1);
+        executor.start();
+        doAnswer(invocation -> {
+            List<BookingCommand> batch = invocation.getArgument(0);
+            batch.get(0).defer();
+            return null;
+        }).when(sessionService).applyBookings(anyList());
+        when(sessionService.participate(1L, 2L)).thenReturn(BookingResult.WAITLISTED);
+
+        //WHEN - THEN
+        assertThat(executor.participate(1L, 2L)).isEqualTo(BookingResult.WAITLISTED);
+    }
+}
@@ -0,0 +1,93 @@
+package com.openclassrooms.starterjwt.unit.services;
+
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.services.SessionSearchIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class SessionSearchIndexTest {
+    @Mock
+    private SessionRepository sessionRepository;
+
+    private SessionSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new SessionSearchIndex(sessionRepository);
+    }
+
+    @Test
+    void search_shouldMatchPrefixesOfEveryWord_withoutAccentsOrCase() {
+        //GIVEN
+        index.index(1L, "Yoga doux", "Séance de relaxation guidée");
+        index.index(2L, "Pilates", "Renforcement du dos");
+
+        //WHEN - THEN
+        assertThat(index.search("rela", 10)).containsExactly(1L);
+        assertThat(index.search("SEANCE guidee", 10)).containsExactly(1L);
+        assertThat(index.search("d", 10)).containsExactlyInAnyOrder(1L, 2L);
+        // Tous les mots doivent correspondre
+        assertThat(index.search("yoga pilates", 10)).isEmpty();
+        assertThat(index.search(" -- ", 10)).isEmpty();
+    }
+
+    @Test
+    void search_shouldRankNameAboveDescription_andWholeWordsAbovePrefixes() {
+        //GIVEN
+        index.index(1L, "Stretching", "Un peu de yoga en fin de séance");
+        index.index(2L, "Yoga", "Postures debout");
+        index.index(3L, "Yogalates", "Yoga et pilates");
+
+        //WHEN - THEN
+        assertThat(index.search("yoga", 10)).containsExactly(2L, 3L, 1L);
+        assertThat(index.search("yoga", 2)).containsExactly(2L, 3L);
+    }
+
+    @Test
+    void index_shouldReplacePreviousText_andRemoveDropsSession() {
+        //GIVEN
+        index.index(1L, "Yoga", "Matin");
+
+        //WHEN
+        index.index(1L, "Pilates", "Matin");
+
+        //THEN
+        assertThat(index.search("yoga", 10)).isEmpty();
+        assertThat(index.search("pilates", 10)).containsExactly(1L);
+
+        index.remove(1L);
+        assertThat(index.search("matin", 10)).isEmpty();
+        assertThat(index.getSessionCount()).isZero();
+        assertThat(index.getTermCount()).isZero();
+    }
+
+    @Test
+    void rebuild_shouldIndexAllSessions_andKeepChangesMadeWhileReading() {
+        //GIVEN : la session 2 est renommée pendant la lecture de l'instantané
+        List<Object[]> rows = List.of(
+                new Object[] {1L, "Yoga", "Séance du matin"},
+                new Object[] {2L, "Ancien nom", null});
+        when(sessionRepository.findAllText()).thenAnswer(invocation -> {
+            index.index(2L, "Pilates", null);
+            return rows;
+        });
+
+        //WHEN
+        index.rebuild();
+
+        //THEN
+        assertThat(index.search("matin", 10)).containsExactly(1L);
+        assertThat(index.search("pilates", 10)).containsExactly(2L);
+        assertThat(index.search("ancien", 10)).isEmpty();
+        assertThat(index.getSessionCount()).isEqualTo(2);
+    }
+}
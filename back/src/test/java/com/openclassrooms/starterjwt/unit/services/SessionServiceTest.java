@@ -1,26 +1,65 @@
 package com.openclassrooms.starterjwt.unit.services;
 
+import com.openclassrooms.starterjwt.dto.SessionFilterDto;
+import com.openclassrooms.starterjwt.dto.SessionPatchDto;
 import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.ConflictException;
 import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.models.ParticipationId;
+import com.openclassrooms.starterjwt.models.SeatHold;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.models.WaitlistEntry;
+import com.openclassrooms.starterjwt.repository.ParticipationRepository;
+import com.openclassrooms.starterjwt.repository.SeatHoldRepository;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.repository.WaitlistRepository;
+import com.openclassrooms.starterjwt.services.BookingCommand;
+import com.openclassrooms.starterjwt.services.BookingResult;
+import com.openclassrooms.starterjwt.services.EnrollmentStatus;
+import com.openclassrooms.starterjwt.services.SeatHeldEvent;
+import com.openclassrooms.starterjwt.services.SeatHoldEndedEvent;
+import com.openclassrooms.starterjwt.services.SeatReleasedEvent;
+import com.openclassrooms.starterjwt.services.SessionPage;
+import com.openclassrooms.starterjwt.services.SessionSearchIndex;
 import com.openclassrooms.starterjwt.services.SessionService;
+import com.openclassrooms.starterjwt.services.SessionTextChangedEvent;
+import com.openclassrooms.starterjwt.services.WeeklySchedule;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -31,6 +70,24 @@ public class SessionServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private ParticipationRepository participationRepository;
+
+    @Mock
+    private WaitlistRepository waitlistRepository;
+
+    @Mock
+    private SeatHoldRepository seatHoldRepository;
+
+    @Mock
+    private SessionSearchIndex searchIndex;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     @InjectMocks
     private SessionService sessionService;
 
@@ -49,6 +106,35 @@ public class SessionServiceTest {
         verify(sessionRepository).findAll();
     }
 
+    @Test
+    void findParticipantIds_shouldGroupJoinTableRowsBySession() {
+        //GIVEN : lignes (session_id, user_id) de la table PARTICIPATE
+        List<Long> sessionIds = List.of(1L, 2L, 3L);
+        List<Object[]> rows = List.of(
+                new Object[]{1, 10},
+                new Object[]{1, 11},
+                new Object[]{2, 10});
+        when(sessionRepository.findParticipantIds(sessionIds)).thenReturn(rows);
+
+        //WHEN
+        Map<Long, List<Long>> result = sessionService.findParticipantIds(sessionIds);
+
+        //THEN
+        assertThat(result.get(1L)).isEqualTo(List.of(10L, 11L));
+        assertThat(result.get(2L)).isEqualTo(List.of(10L));
+        assertThat(result.containsKey(3L)).isFalse();
+    }
+
+    @Test
+    void findParticipantIds_shouldNotQuery_whenNoSessions() {
+        //WHEN
+        Map<Long, List<Long>> result = sessionService.findParticipantIds(List.of());
+
+        //THEN
+        assertThat(result.isEmpty()).isTrue();
+        verifyNoInteractions(sessionRepository);
+    }
+
     @Test
     void findById_shouldReturnSession_whenExists() {
         //GIVEN
@@ -84,6 +170,41 @@ public class SessionServiceTest {
         verify(sessionRepository).save(session);
     }
 
+    @Test
+    void createRecurring_shouldCreateOneSessionPerOccurrence() {
+        //GIVEN : lundi et mercredi à 18h30 pendant deux semaines
+        Session template = Session.builder().name("Yoga du soir").description("Hebdomadaire").capacity(12).build();
+        WeeklySchedule schedule = new WeeklySchedule(LocalDate.of(2024, 9, 2), LocalDate.of(2024, 9, 15),
+                Set.of(DayOfWeek.MONDAY, DayOfWeek.WEDNESDAY), LocalTime.of(18, 30));
+        when(sessionRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        //WHEN
+        List<Session> sessions = sessionService.createRecurring(template, schedule);
+
+        //THEN : un seul saveAll, les inserts partent en lots au flush
+        assertThat(sessions.size()).isEqualTo(4);
+        assertThat(sessions.get(3).getDate()).isEqualTo(Date.from(
+                LocalDate.of(2024, 9, 11).atTime(18, 30).atZone(ZoneId.systemDefault()).toInstant()));
+        assertThat(sessions.get(0).getName()).isEqualTo("Yoga du soir");
+        assertThat(sessions.get(0).getCapacity()).isEqualTo(12);
+        verify(sessionRepository, never()).save(any());
+    }
+
+    @Test
+    void createRecurring_shouldThrowBadRequestException_whenScheduleIsEmptyOrTooLong() {
+        //GIVEN
+        Session template = Session.builder().name("Yoga").description("Quotidien").build();
+        WeeklySchedule reversed = new WeeklySchedule(LocalDate.of(2024, 9, 15), LocalDate.of(2024, 9, 2),
+                Set.of(DayOfWeek.MONDAY), LocalTime.of(9, 0));
+        WeeklySchedule century = new WeeklySchedule(LocalDate.of(2000, 1, 1), LocalDate.of(2100, 1, 1),
+                Set.of(DayOfWeek.values()), LocalTime.of(9, 0));
+
+        //WHEN - THEN
+        assertThrows(BadRequestException.class, () -> sessionService.createRecurring(template, reversed));
+        assertThrows(BadRequestException.class, () -> sessionService.createRecurring(template, century));
+        verifyNoInteractions(sessionRepository);
+    }
+
     @Test
     void delete_shouldCallRepositoryDelete() {
         //GIVEN
@@ -95,130 +216,684 @@ public class SessionServiceTest {
     }
 
     @Test
-    void update_shouldSetIdAndSave() {
-        //GIVEN
-        Long id = 1234L;
-        Session session = new Session();
+    void update_shouldApplyChangesToCurrentSession_andKeepParticipants_whenUsersAreMissing() {
+        //GIVEN : la session en base a un participant, la modification n'en porte pas
+        User participant = User.builder().id(7L).build();
+        Session current = Session.builder().id(1234L).name("Avant").version(3L)
+                .users(new ArrayList<>(List.of(participant))).build();
+        Session changes = Session.builder().name("Après").description("Nouvelle description").build();
+
+        when(sessionRepository.findById(1234L)).thenReturn(Optional.of(current));
+        when(sessionRepository.saveAndFlush(current)).thenReturn(current);
+        //WHEN
+        Session result = sessionService.update(1234L, changes);
+        //THEN
+        assertThat(result).isEqualTo(current);
+        assertThat(current.getName()).isEqualTo("Après");
+        assertThat(current.getDescription()).isEqualTo("Nouvelle description");
+        assertThat(current.getUsers()).isEqualTo(List.of(participant));
+    }
+
+    @Test
+    void update_shouldRemoveNewParticipantsFromWaitlist() {
+        //GIVEN : l'utilisateur 8 attendait une place et devient participant par la modification
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        Session current = Session.builder().id(1L).version(2L).users(new ArrayList<>()).build();
+        Session changes = Session.builder().name("Yoga").users(new ArrayList<>(List.of(User.builder().id(8L).build()))).build();
+        when(sessionRepository.findById(1L)).thenReturn(Optional.of(current));
+        when(sessionRepository.saveAndFlush(current)).thenReturn(current);
 
-        when(sessionRepository.save(session)).thenReturn(session);
         //WHEN
-        Session result = sessionService.update(id, session);
+        sessionService.update(1L, changes);
+
         //THEN
-        assertThat(session.getId()).isEqualTo(id);
-        assertThat(result).isEqualTo(session);
-        verify(sessionRepository).save(session);
+        verify(waitlistRepository).deleteEntries(1L, List.of(8L));
+    }
+
+    @Test
+    void update_shouldReloadAndRetry_whenConcurrentChangeWinsTheRace() {
+        //GIVEN : le premier flush échoue sur la version, le second passe
+        Session current = Session.builder().id(1L).version(1L).build();
+        Session changes = Session.builder().name("Yoga").build();
+
+        when(sessionRepository.findById(1L)).thenReturn(Optional.of(current));
+        when(sessionRepository.saveAndFlush(current))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Session.class, 1L))
+                .thenReturn(current);
+        //WHEN
+        Session result = sessionService.update(1L, changes);
+        //THEN
+        assertThat(result).isEqualTo(current);
+        verify(sessionRepository, times(2)).findById(1L);
     }
 
     @Test
-    void participate_shouldAddUser_WhenNotAlreadyParticipate() {
+    void update_shouldThrowConflictException_afterMaxAttempts() {
         //GIVEN
-        Long sessionId = 1L;
-        Long userId = 2L;
+        Session current = Session.builder().id(1L).version(1L).build();
+        when(sessionRepository.findById(1L)).thenReturn(Optional.of(current));
+        when(sessionRepository.saveAndFlush(current))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Session.class, 1L));
 
-        User user = new User();
-        user.setId(userId);
+        //WHEN - THEN
+        assertThrows(ConflictException.class, () -> sessionService.update(1L, new Session()));
+        verify(sessionRepository, times(SessionService.MAX_UPDATE_ATTEMPTS)).saveAndFlush(current);
+    }
 
-        Session session = new Session();
-        session.setUsers(new ArrayList<>());
+    @Test
+    void update_shouldThrowConflictException_whenClientVersionIsStale() {
+        //GIVEN : le client a lu la version 1, la session est déjà en version 2
+        Session current = Session.builder().id(1L).version(2L).build();
+        when(sessionRepository.findById(1L)).thenReturn(Optional.of(current));
+
+        //WHEN - THEN
+        assertThrows(ConflictException.class,
+                () -> sessionService.update(1L, Session.builder().version(1L).build()));
+        verify(sessionRepository, times(0)).saveAndFlush(current);
+    }
+
+    @Test
+    void update_shouldThrowNotFoundException_whenSessionNotFound() {
+        //GIVEN
+        when(sessionRepository.findById(1L)).thenReturn(Optional.empty());
+
+        //WHEN - THEN
+        assertThrows(NotFoundException.class, () -> sessionService.update(1L, new Session()));
+    }
+
+    @Test
+    void patch_shouldWriteChangedFieldsInOneUpdate_withoutTouchingParticipants() {
+        //GIVEN : seule la description change
+        SessionPatchDto patch = new SessionPatchDto(null, null, null, "Nouvelle description", null, null);
+        Session patched = Session.builder().id(1L).description("Nouvelle description").version(5L).build();
+        when(sessionRepository.patch(1L, patch)).thenReturn(1);
+        when(sessionRepository.findById(1L)).thenReturn(Optional.of(patched));
 
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
-        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
-        when(sessionRepository.save(session)).thenReturn(session);
         //WHEN
-        sessionService.participate(sessionId, userId);
+        Session result = sessionService.patch(1L, patch);
+
         //THEN
-        assertThat(session.getUsers().toArray()).contains(user);
-        verify(sessionRepository).save(session);
+        assertThat(result).isEqualTo(patched);
+        verify(sessionRepository, never()).saveAndFlush(any());
+        verifyNoInteractions(userRepository, participationRepository);
+        verify(eventPublisher, never()).publishEvent(any(SeatReleasedEvent.class));
+        verify(eventPublisher).publishEvent(any(SessionTextChangedEvent.class));
+    }
+
+    @Test
+    void patch_shouldThrowConflictException_whenVersionIsStale() {
+        //GIVEN : le client a lu la version 3, la session est en version 4
+        SessionPatchDto patch = new SessionPatchDto("Yoga", null, null, null, null, 3L);
+        when(sessionRepository.patch(1L, patch)).thenReturn(0);
+        when(sessionRepository.findById(1L)).thenReturn(Optional.of(Session.builder().id(1L).version(4L).build()));
+
+        //WHEN - THEN
+        assertThrows(ConflictException.class, () -> sessionService.patch(1L, patch));
     }
 
     @Test
-    void participate_shouldThrowNotFoundException_whenSessionOrUserNotFound() {
+    void patch_shouldThrowBadRequestException_whenCapacityIsBelowSeatsTaken() {
         //GIVEN
-        Long sessionId = 1L;
-        Long userId = 1L;
+        SessionPatchDto patch = new SessionPatchDto(null, null, null, null, 2, null);
+        when(sessionRepository.patch(1L, patch)).thenReturn(0);
+        when(sessionRepository.findById(1L)).thenReturn(Optional.of(Session.builder().id(1L).participantCount(5).build()));
 
-        User user = new User();
-        user.setId(userId);
+        //WHEN - THEN
+        assertThrows(BadRequestException.class, () -> sessionService.patch(1L, patch));
+        verifyNoInteractions(eventPublisher);
+    }
 
-        Session session = new Session();
-        session.setUsers(new ArrayList<>());
+    @Test
+    void participate_shouldClaimSeatAndInsertParticipation() {
+        //GIVEN
+        when(sessionRepository.claimSeat(1L)).thenReturn(1);
+        when(participationRepository.insertParticipation(1L, 2L)).thenReturn(1);
+
+        //WHEN
+        BookingResult result = sessionService.participate(1L, 2L);
+
+        //THEN : ni la session ni l'utilisateur ne sont chargés
+        assertThat(result).isEqualTo(BookingResult.BOOKED);
+        verify(sessionRepository).claimSeat(1L);
+        verify(participationRepository).insertParticipation(1L, 2L);
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void participate_shouldBookHeldSeat_insteadOfClaimingAnother() {
+        //GIVEN : l'utilisateur a déjà une place réservée temporairement
+        SeatHold hold = new SeatHold(10L, 1L, 2L, new Date(System.currentTimeMillis() + 60_000));
+        when(seatHoldRepository.findBySessionIdAndUserId(1L, 2L)).thenReturn(Optional.of(hold));
+        when(seatHoldRepository.deleteActiveHold(eq(10L), any(Date.class))).thenReturn(1);
+        when(participationRepository.insertParticipation(1L, 2L)).thenReturn(1);
+
+        //WHEN
+        BookingResult result = sessionService.participate(1L, 2L);
+
+        //THEN : la réservation devient la participation, aucune seconde place n'est prise
+        assertThat(result).isEqualTo(BookingResult.BOOKED);
+        verify(sessionRepository, never()).claimSeat(any());
+        verify(sessionRepository).incrementVersion(1L);
+        verify(eventPublisher).publishEvent(any(SeatHoldEndedEvent.class));
+    }
+
+    @Test
+    void participate_shouldThrowNotFoundException_whenSessionNotFound() {
+        //GIVEN : aucune place réclamée et aucune session
+        when(sessionRepository.claimSeat(1L)).thenReturn(0);
+        when(sessionRepository.existsById(1L)).thenReturn(false);
+
+        //WHEN - THEN
+        assertThrows(NotFoundException.class, () -> sessionService.participate(1L, 1L));
+        verifyNoInteractions(participationRepository);
+    }
+
+    @Test
+    void participate_shouldAddUserToWaitlist_whenSessionIsFull() {
+        //GIVEN : la session existe mais la mise à jour conditionnelle ne trouve plus de place
+        when(sessionRepository.claimSeat(1L)).thenReturn(0);
+        when(sessionRepository.existsById(1L)).thenReturn(true);
+        when(participationRepository.existsById(new ParticipationId(1L, 2L))).thenReturn(false);
+        when(waitlistRepository.insertEntry(1L, 2L)).thenReturn(1);
+
+        //WHEN
+        BookingResult result = sessionService.participate(1L, 2L);
+
+        //THEN
+        assertThat(result).isEqualTo(BookingResult.WAITLISTED);
+        verify(participationRepository, never()).insertParticipation(1L, 2L);
+        verify(eventPublisher).publishEvent(any(SeatReleasedEvent.class));
+    }
 
-        //CAS 1 : Session inexistante, utilisateur inexistant
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.empty());
-        when(userRepository.findById(userId)).thenReturn(Optional.empty());
+    @Test
+    void participate_shouldThrowBadRequestException_whenUserAlreadyWaiting() {
+        //GIVEN : la contrainte unique (session_id, user_id) de la liste d'attente refuse le doublon
+        when(sessionRepository.claimSeat(1L)).thenReturn(0);
+        when(sessionRepository.existsById(1L)).thenReturn(true);
+        when(participationRepository.existsById(new ParticipationId(1L, 2L))).thenReturn(false);
+        when(waitlistRepository.insertEntry(1L, 2L)).thenThrow(new DataIntegrityViolationException("duplicate key"));
 
         //WHEN - THEN
-        assertThrows(NotFoundException.class, () -> sessionService.participate(sessionId, userId));
+        assertThrows(BadRequestException.class, () -> sessionService.participate(1L, 2L));
+    }
 
-        //CAS 2 : Session existe, utilisateur inexistant
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
-        when(userRepository.findById(userId)).thenReturn(Optional.empty());
+    @Test
+    void create_shouldThrowBadRequestException_whenParticipantsExceedCapacity() {
+        //GIVEN
+        Session session = Session.builder().capacity(1)
+                .users(new ArrayList<>(List.of(User.builder().id(1L).build(), User.builder().id(2L).build()))).build();
 
         //WHEN - THEN
-        assertThrows(NotFoundException.class, () -> sessionService.participate(sessionId, userId));
+        assertThrows(BadRequestException.class, () -> sessionService.create(session));
+        verifyNoInteractions(sessionRepository);
     }
 
     @Test
-    void participate_shouldThrowBadRequestException_whenUserAlreadyParticipates() {
-        //GIVEN :
-        Long userId = 1L;
-        User user = new User();
-        user.setId(userId);
+    void participate_shouldThrowNotFoundException_whenUserNotFound() {
+        //GIVEN : l'INSERT ... SELECT n'insère aucune ligne
+        when(sessionRepository.claimSeat(1L)).thenReturn(1);
+        when(participationRepository.insertParticipation(1L, 1L)).thenReturn(0);
 
-        Session session = new Session();
-        session.setUsers(new ArrayList<>(List.of(user)));
+        //WHEN - THEN
+        assertThrows(NotFoundException.class, () -> sessionService.participate(1L, 1L));
+    }
 
-        when(sessionRepository.findById(1L)).thenReturn(Optional.of(session));
-        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+    @Test
+    void participate_shouldThrowBadRequestException_whenUserAlreadyParticipates() {
+        //GIVEN : la clé primaire (session_id, user_id) refuse le doublon
+        when(sessionRepository.claimSeat(1L)).thenReturn(1);
+        when(participationRepository.insertParticipation(1L, 1L))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"));
 
         //WHEN - THEN
         assertThrows(BadRequestException.class, () -> {
-            sessionService.participate(1L, userId);
+            sessionService.participate(1L, 1L);
         });
     }
 
     @Test
-    void noLongerParticipate_shouldRemoveUser_WhenParticipates() {
+    void noLongerParticipate_shouldReleaseSeatAndDeleteParticipation() {
         //GIVEN
-        Long userId = 1L;
-        User user = new User();
-        user.setId(userId);
-        Session session = new Session();
-        session.setUsers(Arrays.asList(user));
+        when(sessionRepository.releaseSeat(1L, 1L)).thenReturn(1);
+        when(participationRepository.deleteParticipation(1L, 1L)).thenReturn(1);
 
-        when(sessionRepository.findById(1L)).thenReturn(Optional.of(session));
-        when(sessionRepository.save(session)).thenReturn(session);
         //WHEN
-        sessionService.noLongerParticipate(1L, userId);
-        //THEN
-        assertThat(session.getUsers().toArray()).doesNotContain(user);
-        verify(sessionRepository).save(session);
+        sessionService.noLongerParticipate(1L, 1L);
+
+        //THEN : la promotion de la liste d'attente est déclenchée
+        verify(participationRepository).deleteParticipation(1L, 1L);
+        verify(eventPublisher).publishEvent(any(SeatReleasedEvent.class));
+    }
+
+    @Test
+    void noLongerParticipate_shouldLeaveWaitlist_whenUserHasNoSeat() {
+        //GIVEN
+        when(sessionRepository.releaseSeat(1L, 1L)).thenReturn(0);
+        when(waitlistRepository.deleteEntry(1L, 1L)).thenReturn(1);
+
+        //WHEN
+        sessionService.noLongerParticipate(1L, 1L);
+
+        //THEN : aucune place libérée
+        verifyNoInteractions(participationRepository, eventPublisher);
     }
 
     @Test
     void noLongerParticipate_shouldThrowNotFoundException_whenSessionNotFound() {
         //GIVEN
-        when(sessionRepository.findById(1L)).thenReturn(Optional.empty());
+        when(sessionRepository.releaseSeat(1L, 1L)).thenReturn(0);
+        when(waitlistRepository.deleteEntry(1L, 1L)).thenReturn(0);
+        when(sessionRepository.existsById(1L)).thenReturn(false);
 
         //WHEN + THEN
         assertThrows(NotFoundException.class, () -> {
             sessionService.noLongerParticipate(1L, 1L);
         });
+        verifyNoInteractions(participationRepository);
     }
 
     @Test
     void noLongerParticipate_shouldThrowBadRequestException_whenUserNotParticipating() {
         //GIVEN
-        Long userId = 1L;
-        Session session = new Session();
-        session.setUsers(new ArrayList<>());
-
-        when(sessionRepository.findById(1L)).thenReturn(Optional.of(session));
+        when(sessionRepository.releaseSeat(1L, 1L)).thenReturn(0);
+        when(waitlistRepository.deleteEntry(1L, 1L)).thenReturn(0);
+        when(sessionRepository.existsById(1L)).thenReturn(true);
 
         //WHEN + THEN
         assertThrows(BadRequestException.class, () -> {
-            sessionService.noLongerParticipate(1L, userId);
+            sessionService.noLongerParticipate(1L, 1L);
         });
     }
 
+    @Test
+    void promoteNext_shouldMoveHeadOfWaitlistIntoClaimedSeat() {
+        //GIVEN
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(sessionRepository.claimSeatForWaitlist(1L)).thenReturn(1);
+        when(waitlistRepository.findFirstBySessionIdOrderByIdAsc(1L))
+                .thenReturn(Optional.of(new WaitlistEntry(10L, 1L, 5L, null)));
+        when(waitlistRepository.deleteEntry(1L, 5L)).thenReturn(1);
+        when(participationRepository.insertParticipation(1L, 5L)).thenReturn(1);
+
+        //WHEN - THEN
+        assertThat(sessionService.promoteNext(1L)).isEqualTo(5L);
+    }
+
+    @Test
+    void promoteNext_shouldGiveSeatBack_whenWaitlistEmptiedMeanwhile() {
+        //GIVEN : la place est réservée mais le dernier en attente vient de partir
+        SimpleTransactionStatus status = new SimpleTransactionStatus();
+        when(transactionManager.getTransaction(any())).thenReturn(status);
+        when(sessionRepository.claimSeatForWaitlist(1L)).thenReturn(1);
+        when(waitlistRepository.findFirstBySessionIdOrderByIdAsc(1L)).thenReturn(Optional.empty());
+
+        //WHEN
+        Long promoted = sessionService.promoteNext(1L);
+
+        //THEN : la transaction est annulée, la réservation de place avec
+        assertThat(promoted).isNull();
+        assertThat(status.isRollbackOnly()).isTrue();
+        verifyNoInteractions(participationRepository);
+    }
+
+    @Test
+    void promoteNext_shouldDropHeadAlreadyParticipating_andGiveSeatToNextWaiter() {
+        //GIVEN : l'utilisateur 5 en tête de file participe déjà, le 6 attend derrière lui
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(sessionRepository.claimSeatForWaitlist(1L)).thenReturn(1);
+        when(waitlistRepository.findFirstBySessionIdOrderByIdAsc(1L)).thenReturn(
+                Optional.of(new WaitlistEntry(10L, 1L, 5L, null)), Optional.of(new WaitlistEntry(11L, 1L, 6L, null)));
+        when(waitlistRepository.deleteEntry(eq(1L), any())).thenReturn(1);
+        when(participationRepository.existsById(new ParticipationId(1L, 5L))).thenReturn(true);
+        when(participationRepository.insertParticipation(1L, 6L)).thenReturn(1);
+
+        //WHEN - THEN
+        assertThat(sessionService.promoteNext(1L)).isEqualTo(6L);
+        verify(participationRepository, never()).insertParticipation(1L, 5L);
+    }
+
+    @Test
+    void promoteNext_shouldKeepDroppedEntriesDeleted_whenNoOtherWaiter() {
+        //GIVEN : le seul en attente participe déjà
+        SimpleTransactionStatus status = new SimpleTransactionStatus();
+        when(transactionManager.getTransaction(any())).thenReturn(status);
+        when(sessionRepository.claimSeatForWaitlist(1L)).thenReturn(1);
+        when(waitlistRepository.findFirstBySessionIdOrderByIdAsc(1L))
+                .thenReturn(Optional.of(new WaitlistEntry(10L, 1L, 5L, null)), Optional.empty());
+        when(waitlistRepository.deleteEntry(1L, 5L)).thenReturn(1);
+        when(participationRepository.existsById(new ParticipationId(1L, 5L))).thenReturn(true);
+
+        //WHEN
+        Long promoted = sessionService.promoteNext(1L);
+
+        //THEN : la place réservée est rendue sans annuler la suppression de l'entrée
+        assertThat(promoted).isNull();
+        assertThat(status.isRollbackOnly()).isFalse();
+        verify(sessionRepository).releaseHeldSeat(1L);
+    }
+
+    @Test
+    void promoteNext_shouldDoNothing_whenNoSeatOrNobodyWaiting() {
+        //GIVEN
+        when(sessionRepository.claimSeatForWaitlist(1L)).thenReturn(0);
+
+        //WHEN - THEN
+        assertThat(sessionService.promoteNext(1L)).isNull();
+        verifyNoInteractions(waitlistRepository, participationRepository);
+    }
+
+    @Test
+    void participateAll_shouldBatchInsertNewParticipants_andReportEachUser() {
+        //GIVEN : 3 places dont une prise par l'utilisateur 3, l'utilisateur 5 n'existe pas
+        Session session = Session.builder().id(1L).capacity(3).participantCount(1).build();
+        when(sessionRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(session));
+        when(userRepository.findExistingIds(anyCollection())).thenReturn(List.of(2L, 3L, 4L, 6L));
+        when(sessionRepository.findParticipantIds(anyCollection())).thenReturn(List.<Object[]>of(new Object[] {1L, 3L}));
+
+        //WHEN
+        Map<Long, EnrollmentStatus> results = sessionService.participateAll(1L, List.of(2L, 3L, 4L, 5L, 6L, 2L));
+
+        //THEN : un seul lot JDBC pour les deux places restantes, résultats dans l'ordre de la demande
+        assertThat(results).isEqualTo(Map.of(2L, EnrollmentStatus.BOOKED, 3L, EnrollmentStatus.ALREADY_PARTICIPATING,
+                4L, EnrollmentStatus.BOOKED, 5L, EnrollmentStatus.USER_NOT_FOUND, 6L, EnrollmentStatus.NO_SEAT));
+        assertThat(new ArrayList<>(results.keySet())).isEqualTo(List.of(2L, 3L, 4L, 5L, 6L));
+        verify(participationRepository).batchInsert(List.of(new ParticipationId(1L, 2L), new ParticipationId(1L, 4L)));
+        verify(participationRepository, never()).insertParticipation(any(), any());
+        assertThat(session.getParticipantCount()).isEqualTo(3);
+    }
+
+    @Test
+    void participateAll_shouldBookHeldSeats_withoutTakingFreeOnes() {
+        //GIVEN : session complète, dont une place réservée temporairement par l'utilisateur 2
+        Session session = Session.builder().id(1L).capacity(2).participantCount(2).build();
+        when(sessionRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(session));
+        when(userRepository.findExistingIds(anyCollection())).thenReturn(List.of(2L, 4L));
+        when(sessionRepository.findParticipantIds(anyCollection())).thenReturn(List.<Object[]>of(new Object[] {1L, 3L}));
+        when(seatHoldRepository.findBySessionIdIn(List.of(1L)))
+                .thenReturn(List.of(new SeatHold(10L, 1L, 2L, new Date(System.currentTimeMillis() + 60_000))));
+        when(seatHoldRepository.deleteActiveHold(eq(10L), any(Date.class))).thenReturn(1);
+
+        //WHEN
+        Map<Long, EnrollmentStatus> results = sessionService.participateAll(1L, List.of(2L, 4L));
+
+        //THEN : la place réservée est confirmée, le compteur ne bouge pas
+        assertThat(results).isEqualTo(Map.of(2L, EnrollmentStatus.BOOKED, 4L, EnrollmentStatus.NO_SEAT));
+        verify(participationRepository).batchInsert(List.of(new ParticipationId(1L, 2L)));
+        verify(eventPublisher).publishEvent(any(SeatHoldEndedEvent.class));
+        assertThat(session.getParticipantCount()).isEqualTo(2);
+    }
+
+    @Test
+    void participateAll_shouldThrowBadRequestException_whenNoUserIdGiven() {
+        //WHEN - THEN
+        assertThrows(BadRequestException.class, () -> sessionService.participateAll(1L, List.of()));
+        verifyNoInteractions(sessionRepository, participationRepository);
+    }
+
+    @Test
+    void holdSeat_shouldClaimSeatAndInsertHold() {
+        //GIVEN
+        SeatHold hold = new SeatHold(10L, 1L, 2L, new Date(System.currentTimeMillis() + 60_000));
+        when(sessionRepository.claimSeat(1L)).thenReturn(1);
+        when(seatHoldRepository.insertHold(eq(1L), eq(2L), any(Date.class))).thenReturn(1);
+        when(seatHoldRepository.findBySessionIdAndUserId(1L, 2L)).thenReturn(Optional.of(hold));
+
+        //WHEN
+        SeatHold result = sessionService.holdSeat(1L, 2L, 60_000);
+
+        //THEN : l'expiration sera planifiée après le commit
+        assertThat(result).isEqualTo(hold);
+        verify(eventPublisher).publishEvent(any(SeatHeldEvent.class));
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void holdSeat_shouldThrowConflictException_whenNoSeatLeft() {
+        //GIVEN : la session existe mais est complète
+        when(sessionRepository.claimSeat(1L)).thenReturn(0);
+        when(sessionRepository.existsById(1L)).thenReturn(true);
+
+        //WHEN - THEN
+        assertThrows(ConflictException.class, () -> sessionService.holdSeat(1L, 2L, 60_000));
+        verifyNoInteractions(seatHoldRepository);
+    }
+
+    @Test
+    void confirmHold_shouldTurnHoldIntoParticipation() {
+        //GIVEN
+        SeatHold hold = new SeatHold(10L, 1L, 2L, new Date(System.currentTimeMillis() + 60_000));
+        when(seatHoldRepository.findBySessionIdAndUserId(1L, 2L)).thenReturn(Optional.of(hold));
+        when(seatHoldRepository.deleteActiveHold(eq(10L), any(Date.class))).thenReturn(1);
+        when(participationRepository.insertParticipation(1L, 2L)).thenReturn(1);
+
+        //WHEN
+        sessionService.confirmHold(1L, 2L);
+
+        //THEN : la place était déjà comptée, seule la version avance
+        verify(sessionRepository).incrementVersion(1L);
+        verify(sessionRepository, never()).claimSeat(1L);
+        verify(eventPublisher).publishEvent(any(SeatHoldEndedEvent.class));
+    }
+
+    @Test
+    void confirmHold_shouldThrowConflictException_whenHoldHasExpired() {
+        //GIVEN : la réservation temporaire a expiré mais n'a pas encore été libérée
+        SeatHold hold = new SeatHold(10L, 1L, 2L, new Date(System.currentTimeMillis() - 1_000));
+        when(seatHoldRepository.findBySessionIdAndUserId(1L, 2L)).thenReturn(Optional.of(hold));
+        when(seatHoldRepository.deleteActiveHold(eq(10L), any(Date.class))).thenReturn(0);
+
+        //WHEN - THEN
+        assertThrows(ConflictException.class, () -> sessionService.confirmHold(1L, 2L));
+        verifyNoInteractions(participationRepository);
+    }
+
+    @Test
+    void expireHold_shouldDeleteHoldAndReleaseSeat() {
+        //GIVEN
+        SeatHold hold = new SeatHold(10L, 1L, 2L, new Date(System.currentTimeMillis() - 1_000));
+        when(seatHoldRepository.findById(10L)).thenReturn(Optional.of(hold));
+        when(seatHoldRepository.deleteExpiredHold(eq(10L), any(Date.class))).thenReturn(1);
+
+        //WHEN
+        boolean released = sessionService.expireHold(10L);
+
+        //THEN : la place libérée est proposée à la liste d'attente
+        assertThat(released).isTrue();
+        verify(sessionRepository).releaseHeldSeat(1L);
+        verify(eventPublisher).publishEvent(any(SeatReleasedEvent.class));
+    }
+
+    @Test
+    void expireHold_shouldDoNothing_whenHoldWasConfirmedMeanwhile() {
+        //GIVEN
+        when(seatHoldRepository.findById(10L)).thenReturn(Optional.empty());
+
+        //WHEN - THEN
+        assertThat(sessionService.expireHold(10L)).isFalse();
+        verify(sessionRepository, never()).releaseHeldSeat(any());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void findPage_shouldReturnNextCursor_whenMoreSessionsExist() {
+        //GIVEN : 3 sessions renvoyées pour une page de 2 (une ligne de plus que la page)
+        Session s1 = Session.builder().id(1L).date(new Date(1000L)).build();
+        Session s2 = Session.builder().id(2L).date(new Date(2000L)).build();
+        Session s3 = Session.builder().id(3L).date(new Date(2000L)).build();
+        when(sessionRepository.findFirstPage(PageRequest.of(0, 3))).thenReturn(Arrays.asList(s1, s2, s3));
+
+        //WHEN
+        SessionPage page = sessionService.findPage(null, 2);
+
+        //THEN : le curseur pointe sur la dernière session de la page
+        assertThat(page.getSessions().size()).isEqualTo(2);
+        assertThat(page.getNextCursor()).isNotNull();
+
+        when(sessionRepository.findPageAfter(new Date(2000L), 2L, PageRequest.of(0, 3))).thenReturn(List.of(s3));
+        SessionPage next = sessionService.findPage(page.getNextCursor(), 2);
+        assertThat(next.getSessions().size()).isEqualTo(1);
+        assertThat(next.getNextCursor()).isNull();
+    }
+
+    @Test
+    void findPage_shouldCapPageSize() {
+        //GIVEN
+        when(sessionRepository.findFirstPage(PageRequest.of(0, SessionService.MAX_PAGE_SIZE + 1))).thenReturn(new ArrayList<>());
+
+        //WHEN
+        SessionPage page = sessionService.findPage(null, 10000);
+
+        //THEN
+        assertThat(page.getSessions().isEmpty()).isTrue();
+        verify(sessionRepository).findFirstPage(PageRequest.of(0, SessionService.MAX_PAGE_SIZE + 1));
+    }
+
+    @Test
+    void findPage_shouldThrowBadRequest_whenCursorOrLimitIsInvalid() {
+        //WHEN - THEN
+        assertThrows(BadRequestException.class, () -> sessionService.findPage("not-a-cursor!", 10));
+        assertThrows(BadRequestException.class, () -> sessionService.findPage(null, 0));
+    }
+
+    @Test
+    void findAll_shouldQueryFilteredSessions_whenFilterIsSet() {
+        //GIVEN
+        SessionFilterDto filter = new SessionFilterDto(null, null, 2L, null);
+        Session session = Session.builder().id(1L).build();
+        when(sessionRepository.findFiltered(filter, null, null, null)).thenReturn(List.of(session));
+
+        //WHEN
+        List<Session> result = sessionService.findAll(filter);
+
+        //THEN : la liste complète n'est pas chargée
+        assertThat(result).isEqualTo(List.of(session));
+        verify(sessionRepository, never()).findAll();
+    }
+
+    @Test
+    void findPage_shouldContinueFilteredQueryAfterCursor() {
+        //GIVEN : 3 sessions renvoyées pour une page de 2
+        SessionFilterDto filter = new SessionFilterDto(null, null, null, 5L);
+        Session s1 = Session.builder().id(1L).date(new Date(1000L)).build();
+        Session s2 = Session.builder().id(2L).date(new Date(2000L)).build();
+        Session s3 = Session.builder().id(3L).date(new Date(3000L)).build();
+        when(sessionRepository.findFiltered(filter, null, null, 3)).thenReturn(Arrays.asList(s1, s2, s3));
+        when(sessionRepository.findFiltered(filter, new Date(2000L), 2L, 3)).thenReturn(List.of(s3));
+
+        //WHEN
+        SessionPage page = sessionService.findPage(null, 2, filter);
+        SessionPage next = sessionService.findPage(page.getNextCursor(), 2, filter);
+
+        //THEN
+        assertThat(page.getSessions().size()).isEqualTo(2);
+        assertThat(next.getSessions()).isEqualTo(List.of(s3));
+        assertThat(next.getNextCursor()).isNull();
+        verify(sessionRepository, never()).findFirstPage(any());
+    }
+
+    @Test
+    void findAll_shouldThrowBadRequest_whenDateRangeIsReversed() {
+        //GIVEN
+        SessionFilterDto filter = new SessionFilterDto(LocalDate.of(2024, 2, 1), LocalDate.of(2024, 1, 1), null, null);
+
+        //WHEN - THEN
+        assertThrows(BadRequestException.class, () -> sessionService.findAll(filter));
+        verifyNoInteractions(sessionRepository);
+    }
+
+    @Test
+    void search_shouldLoadIndexHitsInRankOrder() {
+        //GIVEN : l'index classe la session 2 avant la 1, la 3 a été supprimée entre-temps
+        Session s1 = Session.builder().id(1L).name("Yoga doux").build();
+        Session s2 = Session.builder().id(2L).name("Yoga").build();
+        when(searchIndex.search("yoga", 10)).thenReturn(List.of(2L, 3L, 1L));
+        when(sessionRepository.findAllById(List.of(2L, 3L, 1L))).thenReturn(List.of(s1, s2));
+
+        //WHEN
+        List<Session> result = sessionService.search("yoga", 10);
+
+        //THEN
+        assertThat(result).isEqualTo(List.of(s2, s1));
+    }
+
+    @Test
+    void applyBookings_shouldDecideInMemory_andWriteJoinTableInBatches() {
+        //GIVEN : une session de 2 places dont une est prise par l'utilisateur 10
+        Session session = Session.builder().id(1L).capacity(2).participantCount(1).build();
+        when(sessionRepository.findAllById(Set.of(1L, 2L))).thenReturn(List.of(session));
+        when(userRepository.findExistingIds(anyCollection())).thenReturn(List.of(11L, 12L, 15L));
+        when(waitlistRepository.findSessionIdsWithWaiters(Set.of(1L))).thenReturn(List.of());
+        when(sessionRepository.findParticipantIds(Set.of(1L))).thenReturn(List.<Object[]>of(new Object[] {1L, 10L}));
+
+        List<BookingCommand> commands = List.of(
+                new BookingCommand(BookingCommand.Type.PARTICIPATE, 1L, 11L),
+                new BookingCommand(BookingCommand.Type.LEAVE, 1L, 10L),
+                new BookingCommand(BookingCommand.Type.PARTICIPATE, 1L, 12L),
+                new BookingCommand(BookingCommand.Type.PARTICIPATE, 1L, 13L),
+                new BookingCommand(BookingCommand.Type.PARTICIPATE, 2L, 11L),
+                new BookingCommand(BookingCommand.Type.PARTICIPATE, 1L, 15L),
+                new BookingCommand(BookingCommand.Type.LEAVE, 1L, 11L));
+
+        //WHEN
+        sessionService.applyBookings(commands);
+
+        //THEN : réservé, libéré, réservé, inconnus, complet donc reporté, puis reporté derrière lui
+        assertThat(commands.get(0).getFailure()).isNull();
+        assertThat(commands.get(1).getFailure()).isNull();
+        assertThat(commands.get(2).getFailure()).isNull();
+        assertThat(commands.get(3).getFailure()).isInstanceOf(NotFoundException.class);
+        assertThat(commands.get(4).getFailure()).isInstanceOf(NotFoundException.class);
+        assertThat(commands.get(5).isDeferred()).isTrue();
+        assertThat(commands.get(6).isDeferred()).isTrue();
+        assertThat(session.getParticipantCount()).isEqualTo(2);
+        verify(participationRepository).batchDelete(Set.of(new ParticipationId(1L, 10L)));
+        verify(participationRepository).batchInsert(Set.of(new ParticipationId(1L, 11L), new ParticipationId(1L, 12L)));
+        verify(sessionRepository).flush();
+        verify(eventPublisher).publishEvent(any(SeatReleasedEvent.class));
+    }
+
+    @Test
+    void applyBookings_shouldDeferLaterCommandsOfSession_onceOneIsDeferred() {
+        //GIVEN : l'utilisateur 5 quitte une session sans y être inscrit, puis s'y inscrit
+        Session session = Session.builder().id(1L).participantCount(0).build();
+        when(sessionRepository.findAllById(Set.of(1L))).thenReturn(List.of(session));
+        when(userRepository.findExistingIds(anyCollection())).thenReturn(List.of(5L));
+        when(waitlistRepository.findSessionIdsWithWaiters(Set.of(1L))).thenReturn(List.of());
+        when(sessionRepository.findParticipantIds(Set.of(1L))).thenReturn(List.of());
+
+        List<BookingCommand> commands = List.of(
+                new BookingCommand(BookingCommand.Type.LEAVE, 1L, 5L),
+                new BookingCommand(BookingCommand.Type.PARTICIPATE, 1L, 5L));
+
+        //WHEN
+        sessionService.applyBookings(commands);
+
+        //THEN : les deux sont rejouées dans l'ordre, l'inscription n'est pas annulée par le départ
+        assertThat(commands.get(0).isDeferred()).isTrue();
+        assertThat(commands.get(1).isDeferred()).isTrue();
+        assertThat(session.getParticipantCount()).isZero();
+        verify(participationRepository).batchInsert(Set.of());
+    }
+
+    @Test
+    void applyBookings_shouldDefer_whenUserHoldsSeat() {
+        //GIVEN : l'utilisateur 5 a une place réservée temporairement
+        Session session = Session.builder().id(1L).participantCount(1).build();
+        when(sessionRepository.findAllById(Set.of(1L))).thenReturn(List.of(session));
+        when(userRepository.findExistingIds(anyCollection())).thenReturn(List.of(5L));
+        when(waitlistRepository.findSessionIdsWithWaiters(Set.of(1L))).thenReturn(List.of());
+        when(sessionRepository.findParticipantIds(Set.of(1L))).thenReturn(List.of());
+        when(seatHoldRepository.findBySessionIdIn(Set.of(1L)))
+                .thenReturn(List.of(new SeatHold(10L, 1L, 5L, new Date(System.currentTimeMillis() + 60_000))));
+
+        List<BookingCommand> commands = List.of(new BookingCommand(BookingCommand.Type.PARTICIPATE, 1L, 5L));
+
+        //WHEN
+        sessionService.applyBookings(commands);
+
+        //THEN : rejouée seule, l'inscription confirmera la réservation au lieu d'une seconde place
+        assertThat(commands.get(0).isDeferred()).isTrue();
+        assertThat(session.getParticipantCount()).isEqualTo(1);
+        verify(participationRepository).batchInsert(Set.of());
+    }
 }
@@ -1,7 +1,9 @@
 package com.openclassrooms.starterjwt.unit.services;
 
+import com.openclassrooms.starterjwt.exception.UnknownReferenceException;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.services.UserDetailsCache;
 import com.openclassrooms.starterjwt.services.UserService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -9,9 +11,13 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -22,6 +28,9 @@ public class UserServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private UserDetailsCache userDetailsCache;
+
     @InjectMocks
     private UserService userService;
 
@@ -33,6 +42,7 @@ public class UserServiceTest {
         userService.delete(id);
         //THEN
         verify(userRepository).deleteById(id);
+        verify(userDetailsCache).evictById(id);
     }
 
     @Test
@@ -59,4 +69,30 @@ public class UserServiceTest {
         assertThat(result).isNull();
     }
 
+    @Test
+    void getReferences_shouldCheckIdsInOneQuery_andReturnReferences() {
+        //GIVEN : l'id 2 est demandé deux fois
+        User first = User.builder().id(1L).build();
+        User second = User.builder().id(2L).build();
+        when(userRepository.findExistingIds(anyCollection())).thenReturn(List.of(1L, 2L));
+        when(userRepository.getById(1L)).thenReturn(first);
+        when(userRepository.getById(2L)).thenReturn(second);
+        //WHEN
+        List<User> result = userService.getReferences(List.of(2L, 1L, 2L));
+        //THEN
+        assertThat(result).isEqualTo(List.of(second, first));
+        verify(userRepository, never()).findById(1L);
+    }
+
+    @Test
+    void getReferences_shouldReportMissingIds() {
+        //GIVEN
+        when(userRepository.findExistingIds(anyCollection())).thenReturn(List.of(1L));
+        //WHEN
+        UnknownReferenceException exception = assertThrows(UnknownReferenceException.class,
+                () -> userService.getReferences(List.of(1L, 7L, 9L)));
+        //THEN
+        assertThat(exception.getIds()).isEqualTo(List.of(7L, 9L));
+        verify(userRepository, never()).getById(1L);
+    }
 }
@@ -0,0 +1,62 @@
+package com.openclassrooms.starterjwt.unit.services;
+
+import com.openclassrooms.starterjwt.repository.WaitlistRepository;
+import com.openclassrooms.starterjwt.services.SeatReleasedEvent;
+import com.openclassrooms.starterjwt.services.SessionService;
+import com.openclassrooms.starterjwt.services.WaitlistPromoter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class WaitlistPromoterTest {
+    @Mock
+    private SessionService sessionService;
+
+    @Mock
+    private WaitlistRepository waitlistRepository;
+
+    private WaitlistPromoter promoter;
+
+    @AfterEach
+    void tearDown() {
+        promoter.shutdown();
+    }
+
+    @Test
+    void onSeatReleased_shouldPromoteUntilNoSeatOrWaiterLeft() {
+        //GIVEN : deux places libres pour la file de la session 1
+        promoter = new WaitlistPromoter(sessionService, waitlistRepository, 1);
+        when(sessionService.promoteNext(1L)).thenReturn(5L, 6L, null);
+
+        //WHEN
+        promoter.onSeatReleased(new SeatReleasedEvent(1L));
+
+        //THEN
+        verify(sessionService, timeout(1000).times(3)).promoteNext(1L);
+        assertThat(promoter.getPromotedCount()).isEqualTo(2);
+    }
+
+    @Test
+    void promoteAfterStartup_shouldScheduleEverySessionWithWaiters() {
+        //GIVEN
+        promoter = new WaitlistPromoter(sessionService, waitlistRepository, 2);
+        when(waitlistRepository.findSessionIdsWithWaiters()).thenReturn(List.of(1L, 2L));
+
+        //WHEN
+        promoter.promoteAfterStartup();
+
+        //THEN
+        verify(sessionService, timeout(1000)).promoteNext(1L);
+        verify(sessionService, timeout(1000)).promoteNext(2L);
+    }
+}
@@ -125,4 +125,24 @@ describe('DetailComponent', () => {
     expect(mockSessionApiService.detail).toHaveBeenCalledWith('1');
     expect(mockTeacherService.detail).toHaveBeenCalledWith('2');
   });
+
+  it('should count held seats when telling whether the session is full', () => {
+    component.sessionId = '1';
+    mockTeacherService.detail.mockReturnValue(of({}));
+    mockSessionApiService.detail.mockReturnValueOnce(of({
+      id: 1,
+      name: 'Mock session',
+      date: '2025-01-01T00:00:00.000Z',
+      teacher_id: 2,
+      description: 'Description mock',
+      users: [1],
+      capacity: 2,
+      participantCount: 2,
+    }));
+    mockSessionApiService.participate.mockImplementation(() => of(null));
+
+    component.participate();
+
+    expect(component.isFull).toBe(true);
+  });
 });
@@ -18,6 +18,7 @@ export class DetailComponent implements OnInit {
   public teacher: Teacher | undefined;
 
   public isParticipate = false;
+  public isFull = false;
   public isAdmin = false;
 
   public sessionId: string;
@@ -55,7 +56,13 @@ export class DetailComponent implements OnInit {
   }
 
   public participate(): void {
-    this.sessionApiService.participate(this.sessionId, this.userId).subscribe(_ => this.fetchSession());
+    this.sessionApiService.participate(this.sessionId, this.userId).subscribe((response: any) => {
+      // 202: the session is full and the user was put on its waitlist
+      if (response?.message) {
+        this.matSnackBar.open(response.message, 'Close', { duration: 3000 });
+      }
+      this.fetchSession();
+    });
   }
 
   public unParticipate(): void {
@@ -68,6 +75,8 @@ export class DetailComponent implements OnInit {
       .subscribe((session: Session) => {
         this.session = session;
         this.isParticipate = session.users.some(u => u === this.sessionService.sessionInformation!.id);
+        // participantCount also counts seats held for a checkout, which users does not list
+        this.isFull = !!session.capacity && (session.participantCount ?? session.users.length) >= session.capacity;
         this.teacherService
           .detail(session.teacher_id.toString())
           .subscribe((teacher: Teacher) => this.teacher = teacher);
@@ -0,0 +1,6 @@
+export interface SessionFilter {
+  from?: string;
+  to?: string;
+  teacher_id?: number;
+  user_id?: number;
+}
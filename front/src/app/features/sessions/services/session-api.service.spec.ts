@@ -63,6 +63,19 @@ describe('SessionsService', () => {
     req.flush(mockSessions);
   });
 
+  it('should send the filter as query parameters', () => {
+    service.all({ from: '2024-03-01', to: '2024-03-10', teacher_id: 2 }).subscribe((sessions) => {
+      expect(sessions).toEqual([]);
+    });
+
+    const req = httpMock.expectOne((request) => request.url === 'api/session');
+    expect(req.request.params.get('from')).toBe('2024-03-01');
+    expect(req.request.params.get('to')).toBe('2024-03-10');
+    expect(req.request.params.get('teacher_id')).toBe('2');
+    expect(req.request.params.has('user_id')).toBe(false);
+    req.flush([]);
+  });
+
   it('should fetch session detail', () => {
     const session: Session = {
       id: 1,
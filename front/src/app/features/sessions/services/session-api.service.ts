@@ -1,6 +1,7 @@
-import { HttpClient } from '@angular/common/http';
+import { HttpClient, HttpParams } from '@angular/common/http';
 import { Injectable } from '@angular/core';
 import { Observable } from 'rxjs';
+import { SessionFilter } from '../interfaces/session-filter.interface';
 import { Session } from '../interfaces/session.interface';
 
 @Injectable({
@@ -13,8 +14,14 @@ export class SessionApiService {
   constructor(private httpClient: HttpClient) {
   }
 
-  public all(): Observable<Session[]> {
-    return this.httpClient.get<Session[]>(this.pathService);
+  public all(filter: SessionFilter = {}): Observable<Session[]> {
+    let params = new HttpParams();
+    for (const [key, value] of Object.entries(filter)) {
+      if (value !== undefined && value !== null) {
+        params = params.set(key, String(value));
+      }
+    }
+    return this.httpClient.get<Session[]>(this.pathService, { params });
   }
 
   public detail(id: string): Observable<Session> {
@@ -1,19 +1,61 @@
-import { HttpHandler, HttpInterceptor, HttpRequest } from "@angular/common/http";
+import { HttpBackend, HttpClient, HttpErrorResponse, HttpHandler, HttpInterceptor, HttpRequest } from "@angular/common/http";
 import { Injectable } from "@angular/core";
+import { catchError, finalize, Observable, shareReplay, switchMap, tap, throwError } from "rxjs";
+import { SessionInformation } from '../interfaces/sessionInformation.interface';
 import { SessionService } from '../services/session.service';
 
 @Injectable({ providedIn: 'root' })
 export class JwtInterceptor implements HttpInterceptor {
-  constructor(private sessionService: SessionService) {}
+  // Bypasses the interceptor chain so the refresh call cannot loop back here.
+  private httpClient: HttpClient;
+
+  // Refresh tokens are single use, so concurrent 401s share one refresh call.
+  private refreshInFlight$: Observable<SessionInformation> | undefined;
+
+  constructor(private sessionService: SessionService, httpBackend: HttpBackend) {
+    this.httpClient = new HttpClient(httpBackend);
+  }
 
   public intercept(request: HttpRequest<any>, next: HttpHandler) {
-    if (this.sessionService.isLogged) {
-      request = request.clone({
-        setHeaders: {
-          Authorization: `Bearer ${this.sessionService.sessionInformation!.token}`,
-        },
-      });
+    if (!this.sessionService.isLogged) {
+      return next.handle(request);
+    }
+
+    return next.handle(this.withToken(request)).pipe(
+      catchError((error: HttpErrorResponse) => {
+        const refreshToken = this.sessionService.sessionInformation?.refreshToken;
+        if (error.status !== 401 || !refreshToken || request.url.startsWith('api/auth/')) {
+          return throwError(() => error);
+        }
+
+        return this.refresh(refreshToken).pipe(
+          catchError(() => throwError(() => error)),
+          switchMap(() => next.handle(this.withToken(request)))
+        );
+      })
+    );
+  }
+
+  private refresh(refreshToken: string): Observable<SessionInformation> {
+    if (!this.refreshInFlight$) {
+      this.refreshInFlight$ = this.httpClient.post<SessionInformation>('api/auth/refresh', { refreshToken }).pipe(
+        catchError((error: HttpErrorResponse) => {
+          this.sessionService.logOut();
+          return throwError(() => error);
+        }),
+        tap((session: SessionInformation) => this.sessionService.logIn(session)),
+        finalize(() => this.refreshInFlight$ = undefined),
+        shareReplay(1)
+      );
     }
-    return next.handle(request);
+    return this.refreshInFlight$;
+  }
+
+  private withToken(request: HttpRequest<any>): HttpRequest<any> {
+    return request.clone({
+      setHeaders: {
+        Authorization: `Bearer ${this.sessionService.sessionInformation!.token}`,
+      },
+    });
   }
 }
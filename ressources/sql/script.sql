@@ -12,10 +12,20 @@ CREATE TABLE `SESSIONS` (
   `description` VARCHAR(2000),
   `date` TIMESTAMP,
   `teacher_id` int,
+  `capacity` INT,
+  `participant_count` INT NOT NULL DEFAULT 0,
+  `version` INT NOT NULL DEFAULT 0,
   `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
   `updated_at` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
 );
 
+-- Pooled id generator of SESSIONS: Hibernate reserves 50 ids per update of next_val.
+-- On an existing database, start it above the current ids: UPDATE `session_seq` SET `next_val` = (SELECT MAX(`id`) + 1 FROM `SESSIONS`);
+CREATE TABLE `session_seq` (
+  `next_val` BIGINT
+);
+INSERT INTO `session_seq` VALUES (1);
+
 CREATE TABLE `USERS` (
   `id` INT PRIMARY KEY AUTO_INCREMENT,
   `last_name` VARCHAR(40),
@@ -28,13 +38,39 @@ CREATE TABLE `USERS` (
 );
 
 CREATE TABLE `PARTICIPATE` (
-  `user_id` INT, 
-  `session_id` INT
+  `session_id` INT NOT NULL,
+  `user_id` INT NOT NULL,
+  PRIMARY KEY (`session_id`, `user_id`)
+);
+
+CREATE TABLE `WAITLIST` (
+  `id` INT PRIMARY KEY AUTO_INCREMENT,
+  `session_id` INT NOT NULL,
+  `user_id` INT NOT NULL,
+  `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+  CONSTRAINT `uk_waitlist_session_user` UNIQUE (`session_id`, `user_id`)
+);
+
+CREATE TABLE `SEAT_HOLDS` (
+  `id` INT PRIMARY KEY AUTO_INCREMENT,
+  `session_id` INT NOT NULL,
+  `user_id` INT NOT NULL,
+  `expires_at` DATETIME(3) NOT NULL,
+  CONSTRAINT `uk_seat_hold_session_user` UNIQUE (`session_id`, `user_id`)
 );
 
 ALTER TABLE `SESSIONS` ADD FOREIGN KEY (`teacher_id`) REFERENCES `TEACHERS` (`id`);
 ALTER TABLE `PARTICIPATE` ADD FOREIGN KEY (`user_id`) REFERENCES `USERS` (`id`);
 ALTER TABLE `PARTICIPATE` ADD FOREIGN KEY (`session_id`) REFERENCES `SESSIONS` (`id`);
+ALTER TABLE `WAITLIST` ADD FOREIGN KEY (`user_id`) REFERENCES `USERS` (`id`);
+ALTER TABLE `WAITLIST` ADD FOREIGN KEY (`session_id`) REFERENCES `SESSIONS` (`id`);
+ALTER TABLE `SEAT_HOLDS` ADD FOREIGN KEY (`user_id`) REFERENCES `USERS` (`id`);
+ALTER TABLE `SEAT_HOLDS` ADD FOREIGN KEY (`session_id`) REFERENCES `SESSIONS` (`id`);
+
+CREATE INDEX `idx_sessions_date_id` ON `SESSIONS` (`date`, `id`);
+CREATE INDEX `idx_sessions_teacher_id_date` ON `SESSIONS` (`teacher_id`, `date`, `id`);
+CREATE INDEX `idx_participate_user_session` ON `PARTICIPATE` (`user_id`, `session_id`);
+CREATE INDEX `idx_waitlist_session_id` ON `WAITLIST` (`session_id`, `id`);
 
 INSERT INTO TEACHERS (first_name, last_name)
 VALUES ('Margot', 'DELAHAYE'),